@@ -0,0 +1,127 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.awt.*;
+  import java.awt.desktop.*;
+  import java.io.*;
+
+/**
+  A class that will connect the standard java.awt.Desktop application
+  events to an XHandler. On the Mac, this takes the place of the handler 
+  once written against Apple's own extensions, which were removed in 
+  Java 9. Only the events supported by the current desktop are 
+  connected. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class DesktopHandler 
+    implements  
+      AboutHandler,
+      OpenFilesHandler,
+      OpenURIHandler,
+      PreferencesHandler,
+      PrintFilesHandler,
+      QuitHandler {
+
+  private XHandler xHandler;
+
+  /**
+     Constructor.
+
+     @param xHandler The handler that is to receive desktop events.
+   */
+  public DesktopHandler (XHandler xHandler) {
+
+    this.xHandler = xHandler;
+
+    if (! Desktop.isDesktopSupported()) {
+      return;
+    }
+    Desktop desktop = Desktop.getDesktop();
+    if (desktop.isSupported (Desktop.Action.APP_ABOUT)) {
+      desktop.setAboutHandler (this);
+    }
+    if (desktop.isSupported (Desktop.Action.APP_PREFERENCES)
+        && xHandler.preferencesAvailable()) {
+      desktop.setPreferencesHandler (this);
+    }
+    if (desktop.isSupported (Desktop.Action.APP_OPEN_FILE)) {
+      desktop.setOpenFileHandler (this);
+    }
+    if (desktop.isSupported (Desktop.Action.APP_OPEN_URI)) {
+      desktop.setOpenURIHandler (this);
+    }
+    if (desktop.isSupported (Desktop.Action.APP_PRINT_FILE)) {
+      desktop.setPrintFileHandler (this);
+    }
+    if (desktop.isSupported (Desktop.Action.APP_QUIT_HANDLER)) {
+      desktop.setQuitHandler (this);
+    }
+  }
+
+  /**
+     Standard way to respond to an About Menu Item Selection.
+   */
+  public void handleAbout (AboutEvent e) {
+    xHandler.handleAbout();
+  }
+
+  /**
+     Standard way to respond to a document being passed to this application.
+   */
+  public void openFiles (OpenFilesEvent e) {
+    xHandler.handleOpenFiles (e.getFiles());
+  }
+
+  /**
+     Standard way to respond to a URI being passed to this application.
+   */
+  public void openURI (OpenURIEvent e) {
+    xHandler.handleOpenURI (e.getURI());
+  }
+
+  /**
+     Standard way to respond to preferences being requested.
+   */
+  public void handlePreferences (PreferencesEvent e) {
+    xHandler.handlePreferences();
+  }
+
+  /**
+     Standard way to respond to a request to print a document.
+   */
+  public void printFiles (PrintFilesEvent e) {
+    xHandler.handlePrintFiles (e.getFiles());
+  }
+
+  /**
+     Standard way to respond to a Quit Menu Item.
+   */
+  public void handleQuitRequestWith (QuitEvent e, 
+      final QuitResponse response) {
+    xHandler.handleQuitRequest (new XQuitResponse() {
+      public void performQuit() {
+        response.performQuit();
+      }
+      public void cancelQuit() {
+        response.cancelQuit();
+      }
+    });
+  }
+
+} // end DesktopHandler class
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import java.util.concurrent.atomic.*;
+
+/**
+  A batch of files being opened or printed. Files to be opened are split
+  into chunks, which are passed to the XHandler's handleOpenFiles method
+  one after another: each as an event of its own on the event dispatch
+  thread, or on background threads if the OPEN_FILE callback policy says
+  so. Only an XHandler that declares itself thread-safe, with 
+  isOpenFilesThreadSafe, is passed chunks in parallel, on background 
+  threads. Files to be printed are handled by an XPrintPipeline. <p>
+
+  A batch may be cancelled at any time. Chunks not yet started are then 
+  skipped, and a handler working on a chunk can call XBatch.current() to 
+  find out whether it should stop early. <p>
+
+  Following is typical code that would be used to access XBatch. <p>
+
+  <pre><code>
+    XBatch batch = xos.openFiles (droppedFiles);
+    ...
+    // If the user asks to stop
+    batch.cancel();
+    ...
+    batch.getFuture().join();
+    System.out.println (batch.getCompleted() + " of " + batch.getTotal()
+        + " files opened");
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XBatch {
+
+  /** The batch whose chunk the current thread is working on. */
+  private static final ThreadLocal<XBatch> currentBatch 
+      = new ThreadLocal<XBatch>();
+
+  private final List<File>  files;
+  private final List<XBatchListener> listeners;
+
+  private final AtomicInteger   completed           = new AtomicInteger();
+  private final AtomicInteger   failed              = new AtomicInteger();
+  private final AtomicInteger   chunksRemaining     = new AtomicInteger();
+  private volatile boolean      cancelled           = false;
+
+  private final CompletableFuture<XBatch> future    
+      = new CompletableFuture<XBatch>();
+
+  /**
+    Creates a batch.
+
+    @param files     The files to be opened or printed.
+    @param listeners The listeners to be told of progress.
+   */
+  XBatch (List<File> files, 
+      List<XBatchListener> listeners) {
+    this.files = Collections.unmodifiableList (new ArrayList<File> (files));
+    this.listeners = listeners;
+  }
+
+  /**
+    Returns the batch whose files are being handled by the current thread.
+
+    @return The current batch, or null if the current thread is not 
+            handling a batch.
+   */
+  public static XBatch current () {
+    return currentBatch.get();
+  }
+
+  /**
+    Returns the files in the batch.
+
+    @return An unmodifiable list of the files.
+   */
+  public List<File> getFiles () {
+    return files;
+  }
+
+  /**
+    Returns the number of files in the batch.
+
+    @return The number of files.
+   */
+  public int getTotal () {
+    return files.size();
+  }
+
+  /**
+    Returns the number of files handled so far.
+
+    @return The number of files handled without any exception.
+   */
+  public int getCompleted () {
+    return completed.get();
+  }
+
+  /**
+    Returns the number of files whose handling threw an exception.
+
+    @return The number of failures. When the handler throws an exception, 
+            every file in its chunk is counted as failed.
+   */
+  public int getFailed () {
+    return failed.get();
+  }
+
+  /**
+    Returns the fraction of the batch done so far.
+
+    @return A number from 0 to 1.
+   */
+  public double getProgress () {
+    if (files.isEmpty()) {
+      return 1.0;
+    }
+    return (double)(completed.get() + failed.get()) / files.size();
+  }
+
+  /**
+    Ask that the rest of the batch be skipped.
+
+    @return True if the batch was still in progress.
+   */
+  public boolean cancel () {
+    cancelled = true;
+    return (! future.isDone());
+  }
+
+  /**
+    Has the batch been cancelled?
+
+    @return True if cancel has been called.
+   */
+  public boolean isCancelled () {
+    return cancelled;
+  }
+
+  /**
+    Is the batch done?
+
+    @return True if every file has been handled, or skipped.
+   */
+  public boolean isDone () {
+    return future.isDone();
+  }
+
+  /**
+    Returns a future that will complete, with this batch, when the batch 
+    is done.
+
+    @return The batch's future.
+   */
+  public CompletableFuture<XBatch> getFuture () {
+    return future;
+  }
+
+  /**
+    Note how many chunks the batch has been split into.
+   */
+  void setChunks (int chunks) {
+    chunksRemaining.set (chunks);
+    if (chunks == 0) {
+      finish();
+    }
+  }
+
+  /**
+    Handle one chunk of the batch, on the current thread.
+   */
+  void runChunk (XHandler handler, List<File> chunk) {
+    if (cancelled) {
+      chunkSkipped();
+      return;
+    }
+    currentBatch.set (this);
+    boolean ok = false;
+    try {
+      handler.handleOpenFiles (chunk);
+      ok = true;
+    } catch (RuntimeException e) {
+      // Count the chunk as failed
+    } finally {
+      currentBatch.remove();
+      // Even an Error must be counted, or the batch would never finish
+      chunkDone (chunk.size(), ok);
+    }
+  }
+
+  /**
+    Note that a chunk of files has been handled.
+
+    @param files The number of files in the chunk.
+    @param ok    True if they were handled without any problems.
+   */
+  void chunkDone (int files, boolean ok) {
+    if (ok) {
+      completed.addAndGet (files);
+    } else {
+      failed.addAndGet (files);
+    }
+    for (XBatchListener listener : listeners) {
+      try {
+        listener.batchProgress (this);
+      } catch (RuntimeException e) {
+        // One listener's trouble mustn't stall the batch
+      }
+    }
+    if (chunksRemaining.decrementAndGet() == 0) {
+      finish();
+    }
+  }
+
+  /**
+    Note that a chunk of files has been skipped, because the batch was 
+    cancelled.
+   */
+  void chunkSkipped () {
+    if (chunksRemaining.decrementAndGet() == 0) {
+      finish();
+    }
+  }
+
+  private void finish () {
+    for (XBatchListener listener : listeners) {
+      try {
+        listener.batchDone (this);
+      } catch (RuntimeException e) {
+        // One listener's trouble mustn't stall the batch
+      }
+    }
+    future.complete (this);
+  }
+
+  public String toString () {
+    return String.valueOf (getCompleted()) + " of " 
+        + String.valueOf (getTotal()) + " files done"
+        + (cancelled ? " (cancelled)" : "");
+  }
+
+} // end class XBatch
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+/**
+  Something that wants to follow the progress of batches of files being
+  opened or printed. Both methods are called on whichever thread handled
+  the files, often a background thread, so a listener that updates a user
+  interface should pass the update along to the event dispatch thread. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public interface XBatchListener {
+
+  /**
+    Called each time some of the files in a batch have been handled.
+
+    @param batch The batch making progress.
+   */
+  public void batchProgress (XBatch batch);
+
+  /**
+    Called once, when every file in a batch has been handled, or skipped
+    because the batch was cancelled.
+
+    @param batch The batch that is done.
+   */
+  public void batchDone (XBatch batch);
+
+} // end interface XBatchListener
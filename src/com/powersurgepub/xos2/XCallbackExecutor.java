@@ -0,0 +1,298 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.lang.reflect.*;
+  import java.util.concurrent.*;
+  import java.util.concurrent.atomic.*;
+
+/**
+  Decides which thread each type of XHandler callback is run on. By default
+  every callback is run on the calling thread, which is whatever thread the
+  platform delivered the event on, as it always has been. A program whose
+  handlers do lengthy work can instead have a type of callback run: <ul><li>
+    on the event dispatch thread, after the current event; </li><li>
+    on a new virtual thread, in a JVM that supports them (Java 21 and 
+    later; otherwise the bounded pool is used); or </li><li>
+    on a bounded pool of background threads. </li>
+  </ul> <p>
+
+  A handler running off the event dispatch thread must pass any changes to 
+  the user interface back to it, with invokeOnEventThread, or with 
+  getEventThreadExecutor as the executor of a CompletableFuture stage.
+  When running headless, callbacks assigned to the event dispatch thread 
+  are run on the calling thread instead. <p>
+
+  Following is typical code that would be used to access XCallbackExecutor. <p>
+
+  <pre><code>
+    XCallbackExecutor callbacks = xos.getCallbackExecutor();
+    callbacks.setPolicy (XCallbackExecutor.OPEN_FILE, XCallbackExecutor.POOL);
+    callbacks.setPolicy (XCallbackExecutor.PRINT_FILE, 
+        XCallbackExecutor.VIRTUAL_THREAD);
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XCallbackExecutor {
+
+  /** The About callback. */
+  public  static final int      ABOUT               = 0;
+
+  /** The Preferences callback. */
+  public  static final int      PREFERENCES         = 1;
+
+  /** The callback to open a single file. */
+  public  static final int      OPEN_FILE           = 2;
+
+  /** The callback to open a URI. */
+  public  static final int      OPEN_URI            = 3;
+
+  /** The callback to print a file. */
+  public  static final int      PRINT_FILE          = 4;
+
+  /** The Quit callback. */
+  public  static final int      QUIT                = 5;
+
+  private static final int      CALLBACKS           = 6;
+
+  /** Run the callback on the calling thread. */
+  public  static final int      CALLER              = 0;
+
+  /** Run the callback on the event dispatch thread. */
+  public  static final int      EVENT_THREAD        = 1;
+
+  /** Run the callback on a new virtual thread. */
+  public  static final int      VIRTUAL_THREAD      = 2;
+
+  /** Run the callback on a bounded pool of background threads. */
+  public  static final int      POOL                = 3;
+
+  private static final int      POLICIES            = 4;
+
+  /** The most callbacks waiting for a pool thread. */
+  public  static final int      POOL_QUEUE_CAPACITY = 256;
+
+  private static final int      MAX_POOL_THREADS    = 4;
+
+  /** Thread.startVirtualThread, or null if this JVM lacks it. */
+  private static final Method   startVirtualThread;
+  static {
+    Method start = null;
+    try {
+      start = Thread.class.getMethod ("startVirtualThread", Runnable.class);
+    } catch (NoSuchMethodException e) {
+      // Before Java 21
+    }
+    startVirtualThread = start;
+  }
+
+  /** Runs tasks on the event dispatch thread. */
+  private static final Executor eventThreadExecutor = new Executor() {
+    public void execute (Runnable task) {
+      invokeOnEventThread (task);
+    }
+  };
+
+  private final AtomicIntegerArray policies 
+      = new AtomicIntegerArray (CALLBACKS);
+
+  private ThreadPoolExecutor    pool                = null;
+
+  private XEventMetrics         metrics;
+
+  /**
+    Creates an executor that runs every callback on the calling thread.
+   */
+  public XCallbackExecutor () {
+    this (null);
+  }
+
+  /**
+    Creates an executor that runs every callback on the calling thread, 
+    and counts and times each one.
+
+    @param metrics Where callbacks are to be counted and timed, or null
+                   if they need not be.
+   */
+  public XCallbackExecutor (XEventMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+    Choose the thread on which a type of callback will run.
+
+    @param callback ABOUT, PREFERENCES, OPEN_FILE, OPEN_URI, PRINT_FILE
+                    or QUIT.
+    @param policy   CALLER, EVENT_THREAD, VIRTUAL_THREAD or POOL.
+   */
+  public void setPolicy (int callback, int policy) {
+    if (callback < 0 || callback >= CALLBACKS) {
+      throw new IllegalArgumentException ("Unknown callback " + callback);
+    }
+    if (policy < 0 || policy >= POLICIES) {
+      throw new IllegalArgumentException ("Unknown policy " + policy);
+    }
+    policies.set (callback, policy);
+  }
+
+  /**
+    Choose the thread on which every type of callback will run.
+
+    @param policy CALLER, EVENT_THREAD, VIRTUAL_THREAD or POOL.
+   */
+  public void setPolicy (int policy) {
+    for (int callback = 0; callback < CALLBACKS; callback++) {
+      setPolicy (callback, policy);
+    }
+  }
+
+  /**
+    Returns the policy for a type of callback.
+
+    @return CALLER, EVENT_THREAD, VIRTUAL_THREAD or POOL.
+    @param  callback ABOUT, PREFERENCES, OPEN_FILE, OPEN_URI, PRINT_FILE
+                     or QUIT.
+   */
+  public int getPolicy (int callback) {
+    return policies.get (callback);
+  }
+
+  /**
+    Can callbacks be run on virtual threads in this JVM?
+
+    @return True if virtual threads are available.
+   */
+  public static boolean isVirtualThreadSupported () {
+    return (startVirtualThread != null);
+  }
+
+  /**
+    Run a callback according to the policy for its type.
+
+    @param callback The type of callback.
+    @param task     The work of the callback.
+   */
+  public void execute (int callback, Runnable task) {
+    execute (callback, System.nanoTime(), task);
+  }
+
+  /**
+    Run a callback according to the policy for its type, timing it from
+    when the event that prompted it was received.
+
+    @param callback      The type of callback.
+    @param receivedNanos When the event was received, from System.nanoTime.
+    @param task          The work of the callback.
+   */
+  public void execute (int callback, long receivedNanos, Runnable task) {
+    if (metrics != null) {
+      task = metrics.timed (callback, receivedNanos, task);
+    }
+    run (callback, task);
+  }
+
+  /**
+    Run a callback according to the policy for its type, without counting
+    or timing it, for callers that account for it themselves.
+
+    @param callback The type of callback.
+    @param task     The work of the callback.
+   */
+  void run (int callback, Runnable task) {
+    switch (policies.get (callback)) {
+      case EVENT_THREAD:
+        if (XOS.isHeadless()) {
+          task.run();
+        } else {
+          // Even on the event dispatch thread, wait for the current event
+          java.awt.EventQueue.invokeLater (task);
+        }
+        break;
+      case VIRTUAL_THREAD:
+        if (startVirtualThread != null) {
+          try {
+            startVirtualThread.invoke (null, task);
+            break;
+          } catch (IllegalAccessException e) {
+            // Fall through to the pool
+          } catch (InvocationTargetException e) {
+            // Fall through to the pool
+          }
+        }
+        getPool().execute (task);
+        break;
+      case POOL:
+        getPool().execute (task);
+        break;
+      default:
+        task.run();
+    }
+  }
+
+  private synchronized ThreadPoolExecutor getPool () {
+    if (pool == null) {
+      int threads = Math.min 
+          (MAX_POOL_THREADS, Runtime.getRuntime().availableProcessors());
+      pool = new ThreadPoolExecutor (threads, threads, 
+          30, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<Runnable> (POOL_QUEUE_CAPACITY),
+          new XThreadFactory ("xos2-callback"),
+          // If the queue is ever full, slow down whoever is adding to it
+          new ThreadPoolExecutor.CallerRunsPolicy());
+      pool.allowCoreThreadTimeOut (true);
+    }
+    return pool;
+  }
+
+  /**
+    Run something on the event dispatch thread: immediately, if this is 
+    the event dispatch thread, or otherwise as soon as the events already
+    waiting have been dispatched. When running headless, it is run 
+    immediately, on the calling thread.
+
+    @param task The work to be done.
+   */
+  public static void invokeOnEventThread (Runnable task) {
+    if (XOS.isHeadless() || isEventThread()) {
+      task.run();
+    } else {
+      java.awt.EventQueue.invokeLater (task);
+    }
+  }
+
+  /**
+    Returns an executor that runs tasks on the event dispatch thread, for
+    passing the results of background work back to the user interface. 
+
+    @return An executor using the event dispatch thread.
+   */
+  public static Executor getEventThreadExecutor () {
+    return eventThreadExecutor;
+  }
+
+  /**
+    Is this the event dispatch thread? When running headless, there is 
+    none, and AWT is not loaded in order to find out.
+
+    @return True if this is the event dispatch thread.
+   */
+  static boolean isEventThread () {
+    return ((! XOS.isHeadless()) && java.awt.EventQueue.isDispatchThread());
+  }
+
+} // end class XCallbackExecutor
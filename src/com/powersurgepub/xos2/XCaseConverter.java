@@ -0,0 +1,272 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.util.*;
+  import java.util.function.*;
+  import java.util.stream.*;
+
+/**
+  A converter that modifies the demarcation of words within strings,
+  according to a fixed style chosen when the converter is created. The
+  rules are the same as those used by XOS.wordDemarcation: the input is
+  broken up into words by looking for punctuation or white space between
+  words, or transitions from lower- to upper-case; a delimiter is inserted
+  between words, and the case of each letter may be forced up or down. <p>
+
+  A converter may be shared freely between threads. Characters in the
+  ASCII range are handled without any calls to the Character class.
+  Optionally, a converter may remember a limited number of its most recent
+  conversions, for programs that convert the same strings repeatedly. <p>
+
+  Following is typical code that would be used to access XCaseConverter. <p>
+
+  <pre><code>
+    XCaseConverter fileNamer
+        = new XCaseConverter ("-", XCaseConverter.LOWER,
+            XCaseConverter.LOWER, XCaseConverter.LOWER, 500);
+    String fileName = fileNamer.convert ("Two Due Preferences") + ".txt";
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XCaseConverter {
+
+  /** Force letters to upper-case. */
+  public  static final int      UPPER           = 1;
+
+  /** Leave letters as they are. */
+  public  static final int      AS_IS           = 0;
+
+  /** Force letters to lower-case. */
+  public  static final int      LOWER           = -1;
+
+  private  String               delimiter;
+  private  int                  firstCase;
+  private  int                  leadingCase;
+  private  int                  normalCase;
+
+  /** Recent conversions, or null if none are to be remembered. */
+  private  Map<String, String>  cache           = null;
+
+  /**
+    Creates a converter for the given style, without any caching.
+
+    @param  delimiter  Something to be inserted between words. May contain
+                       zero, one or more characters.
+
+    @param  firstCase  Case for the first letter of the first word: UPPER,
+                       AS_IS or LOWER.
+
+    @param  leadingCase  Case for the first letters of remaining words:
+                         UPPER, AS_IS or LOWER.
+
+    @param  normalCase   Case for the remaining letters of words: UPPER,
+                         AS_IS or LOWER.
+   */
+  public XCaseConverter
+      (String delimiter, int firstCase, int leadingCase, int normalCase) {
+    this (delimiter, firstCase, leadingCase, normalCase, 0);
+  }
+
+  /**
+    Creates a converter for the given style, remembering a limited number
+    of recent conversions.
+
+    @param  delimiter  Something to be inserted between words. May contain
+                       zero, one or more characters.
+
+    @param  firstCase  Case for the first letter of the first word: UPPER,
+                       AS_IS or LOWER.
+
+    @param  leadingCase  Case for the first letters of remaining words:
+                         UPPER, AS_IS or LOWER.
+
+    @param  normalCase   Case for the remaining letters of words: UPPER,
+                         AS_IS or LOWER.
+
+    @param  cacheSize    The maximum number of conversions to be remembered,
+                         with the least recently used forgotten first.
+                         Zero to disable caching.
+   */
+  public XCaseConverter (String delimiter, int firstCase, int leadingCase,
+      int normalCase, final int cacheSize) {
+    this.delimiter = delimiter;
+    this.firstCase = firstCase;
+    this.leadingCase = leadingCase;
+    this.normalCase = normalCase;
+    if (cacheSize > 0) {
+      cache = Collections.synchronizedMap
+          (new LinkedHashMap<String, String> (16, 0.75f, true) {
+        protected boolean removeEldestEntry (Map.Entry<String, String> eldest) {
+          return size() > cacheSize;
+        }
+      });
+    }
+  }
+
+  /**
+    Modify the demarcation of words within a string.
+
+    @return       A String with modified demarcation between words.
+    @param inStr  The input string.
+   */
+  public String convert (String inStr) {
+    if (cache == null) {
+      return demarcate (inStr);
+    }
+    String converted = cache.get (inStr);
+    if (converted == null) {
+      converted = demarcate (inStr);
+      cache.put (inStr, converted);
+    }
+    return converted;
+  }
+
+  /**
+    Convert every string in an array.
+
+    @return       A new array containing the converted strings, in the same
+                  order.
+    @param inStrs The strings to be converted.
+   */
+  public String[] convert (String[] inStrs) {
+    String[] converted = new String [inStrs.length];
+    for (int i = 0; i < inStrs.length; i++) {
+      converted [i] = convert (inStrs [i]);
+    }
+    return converted;
+  }
+
+  /**
+    Convert every string in a collection.
+
+    @return       A new list containing the converted strings, in the
+                  collection's iteration order.
+    @param inStrs The strings to be converted.
+   */
+  public List<String> convert (Collection<String> inStrs) {
+    ArrayList<String> converted = new ArrayList<String> (inStrs.size());
+    for (String inStr : inStrs) {
+      converted.add (convert (inStr));
+    }
+    return converted;
+  }
+
+  /**
+    Convert every string in a stream. The conversion is performed lazily,
+    as the returned stream is consumed, and may be performed in parallel if
+    the passed stream is parallel.
+
+    @return       A stream of converted strings.
+    @param inStrs The strings to be converted.
+   */
+  public Stream<String> convert (Stream<String> inStrs) {
+    return inStrs.map (new Function<String, String>() {
+      public String apply (String inStr) {
+        return convert (inStr);
+      }
+    });
+  }
+
+  /**
+    Forget all remembered conversions.
+   */
+  public void clearCache () {
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  /**
+    Perform the conversion, without consulting the cache.
+   */
+  private String demarcate (String inStr) {
+    int length = inStr.length();
+    StringBuilder workBuf
+        = new StringBuilder (length + (length / 4) * delimiter.length());
+    char c;
+    boolean charUpper = false;
+    boolean lastCharUpper = true;
+    boolean letterOrDigit = false;
+    boolean newWord = true;
+    int wordCount = 0;
+    int newCase = 0;
+    for (int i = 0; i < length; i++) {
+      lastCharUpper = charUpper;
+      c = inStr.charAt (i);
+      newCase = normalCase;
+      if (c < 128) {
+        charUpper = (c >= 'A' && c <= 'Z');
+        letterOrDigit = charUpper
+            || (c >= 'a' && c <= 'z')
+            || (c >= '0' && c <= '9');
+      } else {
+        charUpper = Character.isUpperCase (c);
+        letterOrDigit = Character.isLetterOrDigit (c);
+      }
+      if (letterOrDigit) {
+        if (charUpper && (! lastCharUpper)) {
+          newWord = true;
+        }
+        if (newWord) {
+          wordCount++;
+          if (wordCount == 1) {
+            newCase = firstCase;
+          } else {
+            newCase = leadingCase;
+            workBuf.append (delimiter);
+          }
+          newWord = false;
+        } // end if new word
+        if (newCase > 0) {
+          workBuf.append (toUpperCase (c));
+        }
+        else
+        if (newCase < 0) {
+          workBuf.append (toLowerCase (c));
+        } else {
+          workBuf.append (c);
+        }
+      } else {
+        newWord = true;
+      }
+    } // end for every character in input string
+    return workBuf.toString();
+  } // end method demarcate
+
+  private static char toUpperCase (char c) {
+    if (c < 128) {
+      if (c >= 'a' && c <= 'z') {
+        return (char)(c - ('a' - 'A'));
+      }
+      return c;
+    }
+    return Character.toUpperCase (c);
+  }
+
+  private static char toLowerCase (char c) {
+    if (c < 128) {
+      if (c >= 'A' && c <= 'Z') {
+        return (char)(c + ('a' - 'A'));
+      }
+      return c;
+    }
+    return Character.toLowerCase (c);
+  }
+
+} // end class XCaseConverter
@@ -0,0 +1,462 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.*;
+  import java.nio.charset.*;
+  import java.nio.file.*;
+  import java.util.*;
+
+/**
+  Determines what sort of content a file holds: whether it is text or 
+  binary, which character encoding a text file uses, whether it begins
+  with a byte order mark, and which style of line ending it uses. Only a
+  bounded prefix of the file is read. <p>
+
+  Results are remembered, keyed by the file's XFileStamp, so that asking 
+  again about a file that hasn't changed costs a single call to the file 
+  system, without opening the file. A sniffer may be shared freely between
+  threads. <p>
+
+  Encodings are detected as follows. A byte order mark identifies UTF-8, 
+  UTF-16 or UTF-32. Without one, a file with zero bytes in every other
+  position is taken to be UTF-16; any other file with zero bytes, or with
+  many control characters, is taken to be binary. Remaining files are 
+  US-ASCII if every byte is below 128, UTF-8 if the bytes form valid UTF-8,
+  and windows-1252 otherwise. <p>
+
+  Following is typical code that would be used to access XContentSniffer. <p>
+
+  <pre><code>
+    XContentSniffer.Content content = XOS.getContentSniffer().sniff (file);
+    if (content.isText()) {
+      Reader reader = new InputStreamReader 
+          (new FileInputStream (file), content.getCharset());
+      if (content.hasBOM()) {
+        reader.read();
+      }
+      ...
+    }
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XContentSniffer {
+
+  /** The number of bytes read from the start of each file, by default. */
+  public  static final int      DEFAULT_PREFIX_LENGTH = 8192;
+
+  /** The number of results remembered, by default. */
+  public  static final int      DEFAULT_CACHE_SIZE    = 1000;
+
+  /** The encoding assumed for 8-bit text that is not valid UTF-8. */
+  public  static final Charset  FALLBACK_CHARSET;
+  static {
+    Charset fallback = StandardCharsets.ISO_8859_1;
+    try {
+      fallback = Charset.forName ("windows-1252");
+    } catch (IllegalArgumentException e) {
+      // Stick with ISO-8859-1
+    }
+    FALLBACK_CHARSET = fallback;
+  }
+
+  private  int                  prefixLength;
+  private  Map<XFileStamp, Content> cache;
+
+  /**
+    Creates a sniffer with the default prefix length and cache size.
+   */
+  public XContentSniffer () {
+    this (DEFAULT_PREFIX_LENGTH, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+    Creates a sniffer.
+
+    @param prefixLength The maximum number of bytes to be read from the
+                        start of each file.
+    @param cacheSize    The maximum number of results to be remembered,
+                        with the least recently used forgotten first. Zero
+                        to disable caching.
+   */
+  public XContentSniffer (int prefixLength, final int cacheSize) {
+    this.prefixLength = prefixLength;
+    cache = Collections.synchronizedMap
+        (new LinkedHashMap<XFileStamp, Content> (16, 0.75f, true) {
+      protected boolean removeEldestEntry 
+          (Map.Entry<XFileStamp, Content> eldest) {
+        return size() > cacheSize;
+      }
+    });
+  }
+
+  /**
+    Determine the content of a file, reading the file only if it has
+    changed since it was last sniffed.
+
+    @return The content of the file.
+    @param  file The file of interest.
+    @throws IOException If the file cannot be read.
+   */
+  public Content sniff (File file)
+      throws IOException {
+    XFileStamp stamp = XFileStamp.of (file);
+    Content content = cache.get (stamp);
+    if (content != null) {
+      return content;
+    }
+    byte[] prefix = new byte [prefixLength];
+    int length;
+    InputStream in = Files.newInputStream (file.toPath());
+    try {
+      length = in.readNBytes (prefix, 0, prefixLength);
+    } finally {
+      in.close();
+    }
+    content = detect (prefix, length, length < prefixLength);
+    // Only remember the result if the file didn't change while being read
+    if (stamp.equals (XFileStamp.of (file))) {
+      cache.put (stamp, content);
+    }
+    return content;
+  } // end method sniff
+
+  /**
+    Forget all remembered results.
+   */
+  public void clearCache () {
+    cache.clear();
+  }
+
+  /**
+    Determine the content of a file from its first bytes.
+
+    @return The content represented by the bytes.
+    @param  bytes    The first bytes of the file.
+    @param  length   The number of bytes supplied.
+    @param  complete True if the bytes are the entire file.
+   */
+  public static Content detect (byte[] bytes, int length, boolean complete) {
+
+    // Look for a byte order mark
+    Charset charset = null;
+    int bomLength = 0;
+    if (startsWith (bytes, length, 0xEF, 0xBB, 0xBF)) {
+      charset = StandardCharsets.UTF_8;
+      bomLength = 3;
+    }
+    else
+    if (startsWith (bytes, length, 0xFF, 0xFE, 0x00, 0x00)) {
+      charset = Charset.forName ("UTF-32LE");
+      bomLength = 4;
+    }
+    else
+    if (startsWith (bytes, length, 0x00, 0x00, 0xFE, 0xFF)) {
+      charset = Charset.forName ("UTF-32BE");
+      bomLength = 4;
+    }
+    else
+    if (startsWith (bytes, length, 0xFE, 0xFF)) {
+      charset = StandardCharsets.UTF_16BE;
+      bomLength = 2;
+    }
+    else
+    if (startsWith (bytes, length, 0xFF, 0xFE)) {
+      charset = StandardCharsets.UTF_16LE;
+      bomLength = 2;
+    }
+
+    if (charset == null) {
+      int evenZeros = 0;
+      int oddZeros = 0;
+      int controls = 0;
+      for (int i = 0; i < length; i++) {
+        int b = bytes [i] & 0xFF;
+        if (b == 0) {
+          if ((i & 1) == 0) {
+            evenZeros++;
+          } else {
+            oddZeros++;
+          }
+        }
+        else
+        if (b < 0x20 && b != '\t' && b != '\n' && b != '\r' 
+            && b != '\f' && b != '\b' && b != 0x1B) {
+          controls++;
+        }
+      } // end for each byte
+      int pairs = length / 2;
+      if (evenZeros == 0 && oddZeros > 0 && oddZeros >= pairs / 4) {
+        charset = StandardCharsets.UTF_16LE;
+      }
+      else
+      if (oddZeros == 0 && evenZeros > 0 && evenZeros >= pairs / 4) {
+        charset = StandardCharsets.UTF_16BE;
+      }
+      else
+      if (evenZeros > 0 || oddZeros > 0 || controls * 10 > length) {
+        return new Content (false, null, 0, 0, 0, 0, complete);
+      } else {
+        charset = detectSingleByte (bytes, length, complete);
+      }
+    } // end if no byte order mark
+
+    // Count the line endings
+    CharBuffer chars = decode (charset, bytes, bomLength, length);
+    int crlf = 0;
+    int cr = 0;
+    int lf = 0;
+    int end = chars.limit();
+    for (int i = 0; i < end; i++) {
+      char c = chars.get (i);
+      if (c == '\r') {
+        if (i + 1 < end && chars.get (i + 1) == '\n') {
+          crlf++;
+          i++;
+        }
+        else
+        if (i + 1 < end || complete) {
+          cr++;
+        }
+      }
+      else
+      if (c == '\n') {
+        lf++;
+      }
+    } // end for each character
+    return new Content (true, charset, bomLength, crlf, cr, lf, complete);
+  } // end method detect
+
+  private static CharBuffer decode 
+      (Charset charset, byte[] bytes, int offset, int length) {
+    CharsetDecoder decoder = charset.newDecoder()
+        .onMalformedInput (CodingErrorAction.REPLACE)
+        .onUnmappableCharacter (CodingErrorAction.REPLACE);
+    CharBuffer chars = CharBuffer.allocate (length);
+    decoder.decode (ByteBuffer.wrap (bytes, offset, length - offset), 
+        chars, true);
+    chars.flip();
+    return chars;
+  }
+
+  private static boolean startsWith (byte[] bytes, int length, int... mark) {
+    if (length < mark.length) {
+      return false;
+    }
+    for (int i = 0; i < mark.length; i++) {
+      if ((bytes [i] & 0xFF) != mark [i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+    Choose between US-ASCII, UTF-8 and the fallback encoding. A multi-byte
+    sequence cut off by the end of an incomplete prefix doesn't count 
+    against UTF-8.
+   */
+  private static Charset detectSingleByte 
+      (byte[] bytes, int length, boolean complete) {
+    boolean ascii = true;
+    int i = 0;
+    while (i < length) {
+      int b = bytes [i] & 0xFF;
+      if (b < 0x80) {
+        i++;
+        continue;
+      }
+      ascii = false;
+      int following;
+      if (b >= 0xC2 && b <= 0xDF) {
+        following = 1;
+      }
+      else
+      if (b >= 0xE0 && b <= 0xEF) {
+        following = 2;
+      }
+      else
+      if (b >= 0xF0 && b <= 0xF4) {
+        following = 3;
+      } else {
+        return FALLBACK_CHARSET;
+      }
+      for (int j = 1; j <= following; j++) {
+        if (i + j >= length) {
+          return complete ? FALLBACK_CHARSET : StandardCharsets.UTF_8;
+        }
+        if ((bytes [i + j] & 0xC0) != 0x80) {
+          return FALLBACK_CHARSET;
+        }
+      }
+      i = i + 1 + following;
+    } // end while more bytes
+    return ascii ? StandardCharsets.US_ASCII : StandardCharsets.UTF_8;
+  } // end method detectSingleByte
+
+  /**
+    What was learned about a file's content.
+   */
+  public static class Content {
+
+    private  boolean            text;
+    private  Charset            charset;
+    private  int                bomLength;
+    private  int                crlfCount;
+    private  int                crCount;
+    private  int                lfCount;
+    private  boolean            complete;
+
+    Content (boolean text, Charset charset, int bomLength, 
+        int crlfCount, int crCount, int lfCount, boolean complete) {
+      this.text = text;
+      this.charset = charset;
+      this.bomLength = bomLength;
+      this.crlfCount = crlfCount;
+      this.crCount = crCount;
+      this.lfCount = lfCount;
+      this.complete = complete;
+    }
+
+    /**
+      Does the file appear to contain text?
+
+      @return True if text, false if binary.
+     */
+    public boolean isText () {
+      return text;
+    }
+
+    /**
+      Returns the character encoding of a text file.
+
+      @return The encoding, or null if the file is binary.
+     */
+    public Charset getCharset () {
+      return charset;
+    }
+
+    /**
+      Does the file begin with a byte order mark?
+
+      @return True if there is a byte order mark.
+     */
+    public boolean hasBOM () {
+      return (bomLength > 0);
+    }
+
+    /**
+      Returns the length of the byte order mark.
+
+      @return The number of bytes in the byte order mark, or zero if there
+              is none.
+     */
+    public int getBOMLength () {
+      return bomLength;
+    }
+
+    /**
+      Returns the style of line ending used most often.
+
+      @return XOS.LINE_SEP_PLATFORM_DOS, LINE_SEP_PLATFORM_UNIX or 
+              LINE_SEP_PLATFORM_MAC, or null if no line endings were found.
+     */
+    public String getLineSepPlatform () {
+      if (crlfCount == 0 && lfCount == 0 && crCount == 0) {
+        return null;
+      }
+      if (crlfCount >= lfCount && crlfCount >= crCount) {
+        return XOS.LINE_SEP_PLATFORM_DOS;
+      }
+      if (lfCount >= crCount) {
+        return XOS.LINE_SEP_PLATFORM_UNIX;
+      }
+      return XOS.LINE_SEP_PLATFORM_MAC;
+    }
+
+    /**
+      Returns the characters of the line ending used most often.
+
+      @return The line separator, or null if no line endings were found.
+     */
+    public String getLineSep () {
+      String platform = getLineSepPlatform();
+      if (platform == null) {
+        return null;
+      }
+      if (platform.equals (XOS.LINE_SEP_PLATFORM_DOS)) {
+        return XOS.LINE_SEP_STRING_DOS;
+      }
+      if (platform.equals (XOS.LINE_SEP_PLATFORM_UNIX)) {
+        return XOS.LINE_SEP_STRING_UNIX;
+      }
+      return XOS.LINE_SEP_STRING_MAC;
+    }
+
+    /**
+      Does the file use more than one style of line ending?
+
+      @return True if line endings are mixed.
+     */
+    public boolean hasMixedLineEndings () {
+      int styles = 0;
+      if (crlfCount > 0) {
+        styles++;
+      }
+      if (crCount > 0) {
+        styles++;
+      }
+      if (lfCount > 0) {
+        styles++;
+      }
+      return (styles > 1);
+    }
+
+    /**
+      Was the entire file examined, rather than just a prefix?
+
+      @return True if the whole file was read.
+     */
+    public boolean isComplete () {
+      return complete;
+    }
+
+    public String toString () {
+      if (! text) {
+        return "binary";
+      }
+      StringBuilder str = new StringBuilder (charset.name());
+      if (bomLength > 0) {
+        str.append (" with BOM");
+      }
+      String platform = getLineSepPlatform();
+      if (platform != null) {
+        str.append (", ");
+        str.append (platform);
+        str.append (" line endings");
+        if (hasMixedLineEndings()) {
+          str.append (" (mixed)");
+        }
+      }
+      return str.toString();
+    }
+
+  } // end class Content
+
+} // end class XContentSniffer
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+
+/**
+  A platform provider using the standard java.awt.Desktop application
+  event support introduced in Java 9, which takes the place of Apple's
+  extensions on current Macs, and may also be supported on other desktops.
+  The AWT classes are only referenced by DesktopHandler, which is not
+  loaded until install is called. <p>
+
+  On a Mac, file types and creators are stored in the file's Finder 
+  information; see XFinderInfo. Other desktops have no file types or 
+  creators, so there is nothing to set. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XDesktopProvider 
+    implements XPlatformProvider {
+
+  public XDesktopProvider () {
+
+  }
+
+  public String getName () {
+    return "desktop";
+  }
+
+  public int getPriority () {
+    return 100;
+  }
+
+  public boolean isSupported (String osName, boolean headless) {
+    return (! headless);
+  }
+
+  public void install (XOS xos) {
+    new DesktopHandler (xos);
+  }
+
+  public boolean setFileType (File file, int type) {
+    if (isMac()) {
+      return XFinderInfo.setCode (file, XFinderInfo.TYPE_OFFSET, type);
+    }
+    return true;
+  }
+
+  public boolean setFileCreator (File file, int creator) {
+    if (isMac()) {
+      return XFinderInfo.setCode (file, XFinderInfo.CREATOR_OFFSET, creator);
+    }
+    return true;
+  }
+
+  private static boolean isMac () {
+    String osName = System.getProperty (XOS.OS_NAME);
+    return (osName != null && osName.startsWith ("Mac"));
+  }
+
+} // end class XDesktopProvider
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+
+/**
+  Something that wants to know when the listing of a directory kept by 
+  XFileSystemView has changed, because more entries have been read, or 
+  because the directory itself was changed. Called on background threads,
+  so a listener that updates a user interface should pass the update along 
+  to the event dispatch thread. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public interface XDirectoryListener {
+
+  /**
+    Called when a directory's listing has grown, been finished, or been 
+    found out of date, so that anyone showing it should ask for it again.
+
+    @param dir The directory whose listing changed.
+   */
+  public void directoryChanged (File dir);
+
+} // end interface XDirectoryListener
@@ -0,0 +1,396 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.lang.management.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import java.util.concurrent.atomic.*;
+  import java.util.function.*;
+  import javax.management.*;
+
+/**
+  Counts the platform events handled by an XOS context, and records how
+  long each took, from the moment XOS received the event until the 
+  XHandler method returned. Events are of the types identified by the
+  XCallbackExecutor callback constants. Time spent waiting for the thread
+  chosen by the callback's policy is included, as is the coalescing delay 
+  for URIs, and the whole of the background work for a batch of files to 
+  be opened or printed, which counts as one event. <p>
+
+  Latencies are kept in a fixed histogram for each type of event, so that
+  recording one costs a few atomic increments and no allocation. The 
+  metrics may be read in process, or through JMX once register has been 
+  called. <p>
+
+  Following is typical code that would be used to access XEventMetrics. <p>
+
+  <pre><code>
+    XEventMetrics metrics = xos.getEventMetrics();
+    metrics.register (xos.getProgramName());
+    ...
+    double slowest = metrics.getMaxMillis (XCallbackExecutor.OPEN_FILE);
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XEventMetrics 
+    implements XEventMetricsMXBean {
+
+  /** The domain and type of the JMX object name. */
+  public  static final String   OBJECT_NAME_PREFIX  
+      = "com.powersurgepub.xos2:type=EventMetrics";
+
+  /** The name of each type of event, indexed by callback constant. */
+  private static final String[] EVENT_NAMES         = {
+      "about", "preferences", "open-file", "open-uri", "print-file", "quit" };
+
+  private static final int      EVENTS              = EVENT_NAMES.length;
+
+  /** Upper bounds of the histogram buckets, in microseconds. */
+  private static final long[]   BUCKET_BOUNDS_MICROS = {
+      100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000,
+      250000, 500000, 1000000, 2500000, 5000000, 10000000 };
+
+  private static final int      BUCKETS             
+      = BUCKET_BOUNDS_MICROS.length + 1;
+
+  private final AtomicLongArray received            = new AtomicLongArray (EVENTS);
+  private final AtomicLongArray completed           = new AtomicLongArray (EVENTS);
+  private final AtomicLongArray failed              = new AtomicLongArray (EVENTS);
+  private final AtomicLongArray totalNanos          = new AtomicLongArray (EVENTS);
+  private final AtomicLongArray maxNanos            = new AtomicLongArray (EVENTS);
+  private final AtomicLongArray histograms          
+      = new AtomicLongArray (EVENTS * BUCKETS);
+
+  private ObjectName            objectName          = null;
+
+  /**
+    Creates an empty set of metrics.
+   */
+  public XEventMetrics () {
+
+  }
+
+  /**
+    Returns the name of a type of event.
+
+    @return The event name, as used for JMX.
+    @param  event ABOUT, PREFERENCES, OPEN_FILE, OPEN_URI, PRINT_FILE or
+                  QUIT, from XCallbackExecutor.
+   */
+  public static String getEventName (int event) {
+    return EVENT_NAMES [event];
+  }
+
+  /**
+    Wrap the work of handling an event, so that it is counted and timed
+    when it is run.
+
+    @return The work, timed.
+    @param  event         The type of event.
+    @param  receivedNanos When the event was received, from System.nanoTime.
+    @param  task          The work of handling the event.
+   */
+  public Runnable timed 
+      (final int event, final long receivedNanos, final Runnable task) {
+    received.incrementAndGet (event);
+    return new Runnable() {
+      public void run() {
+        boolean ok = false;
+        try {
+          task.run();
+          ok = true;
+        } finally {
+          record (event, receivedNanos, ok);
+        }
+      }
+    };
+  }
+
+  /**
+    Count and time a batch of files, which is finished when its future is.
+
+    @param event         OPEN_FILE or PRINT_FILE.
+    @param receivedNanos When the files were received, from System.nanoTime.
+    @param batch         The batch handling them.
+   */
+  void timed (final int event, final long receivedNanos, XBatch batch) {
+    received.incrementAndGet (event);
+    batch.getFuture().thenAccept (new Consumer<XBatch>() {
+      public void accept (XBatch done) {
+        record (event, receivedNanos, 
+            done.getFailed() == 0 && ! done.isCancelled());
+      }
+    });
+  }
+
+  /**
+    Note that handling an event has finished.
+   */
+  private void record (int event, long receivedNanos, boolean ok) {
+    long nanos = Math.max (0, System.nanoTime() - receivedNanos);
+    if (ok) {
+      completed.incrementAndGet (event);
+    } else {
+      failed.incrementAndGet (event);
+    }
+    totalNanos.addAndGet (event, nanos);
+    long max = maxNanos.get (event);
+    while (nanos > max && ! maxNanos.compareAndSet (event, max, nanos)) {
+      max = maxNanos.get (event);
+    }
+    histograms.incrementAndGet (event * BUCKETS + bucketFor (nanos));
+  }
+
+  private static int bucketFor (long nanos) {
+    long micros = TimeUnit.NANOSECONDS.toMicros (nanos);
+    int bucket = Arrays.binarySearch (BUCKET_BOUNDS_MICROS, micros);
+    return (bucket >= 0 ? bucket : -bucket - 1);
+  }
+
+  /**
+    Returns the number of events of a type whose handling has finished,
+    successfully or not.
+
+    @return The number of finished events.
+    @param  event The type of event.
+   */
+  public long getCount (int event) {
+    return completed.get (event) + failed.get (event);
+  }
+
+  /**
+    Returns the number of events of a type whose handling failed.
+
+    @return The number of failed events.
+    @param  event The type of event.
+   */
+  public long getFailureCount (int event) {
+    return failed.get (event);
+  }
+
+  /**
+    Returns the number of events of a type received but not yet finished.
+
+    @return The number of events in progress.
+    @param  event The type of event.
+   */
+  public long getInFlightCount (int event) {
+    return Math.max (0, received.get (event) - getCount (event));
+  }
+
+  /**
+    Returns the mean latency of a type of event.
+
+    @return Mean milliseconds from receipt to finish, or zero if no event
+            has finished.
+    @param  event The type of event.
+   */
+  public double getMeanMillis (int event) {
+    long count = getCount (event);
+    if (count == 0) {
+      return 0;
+    }
+    return toMillis (totalNanos.get (event)) / count;
+  }
+
+  /**
+    Returns the longest latency of a type of event.
+
+    @return Maximum milliseconds from receipt to finish.
+    @param  event The type of event.
+   */
+  public double getMaxMillis (int event) {
+    return toMillis (maxNanos.get (event));
+  }
+
+  /**
+    Returns a percentile of the latency of a type of event, as the upper
+    bound of the histogram bucket in which it falls, or the maximum 
+    latency, if that is lower.
+
+    @return Milliseconds, or zero if no event has finished.
+    @param  event      The type of event.
+    @param  percentile The percentile wanted, from 0 to 100.
+   */
+  public double getPercentileMillis (int event, double percentile) {
+    long[] counts = getHistogram (event);
+    long total = 0;
+    for (long count : counts) {
+      total = total + count;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long wanted = Math.max (1, (long)Math.ceil (total * percentile / 100));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKET_BOUNDS_MICROS.length; bucket++) {
+      seen = seen + counts [bucket];
+      if (seen >= wanted) {
+        return Math.min 
+            (BUCKET_BOUNDS_MICROS [bucket] / 1000.0, getMaxMillis (event));
+      }
+    }
+    return getMaxMillis (event);
+  }
+
+  /**
+    Returns the latency histogram for a type of event.
+
+    @return The number of events falling into each bucket; see 
+            getBucketBoundsMicros.
+    @param  event The type of event.
+   */
+  public long[] getHistogram (int event) {
+    long[] counts = new long [BUCKETS];
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      counts [bucket] = histograms.get (event * BUCKETS + bucket);
+    }
+    return counts;
+  }
+
+  private static double toMillis (long nanos) {
+    return nanos / 1000000.0;
+  }
+
+  public Map<String, Long> getCounts () {
+    Map<String, Long> counts = new LinkedHashMap<String, Long>();
+    for (int event = 0; event < EVENTS; event++) {
+      counts.put (EVENT_NAMES [event], getCount (event));
+    }
+    return counts;
+  }
+
+  public Map<String, Long> getFailureCounts () {
+    Map<String, Long> counts = new LinkedHashMap<String, Long>();
+    for (int event = 0; event < EVENTS; event++) {
+      counts.put (EVENT_NAMES [event], getFailureCount (event));
+    }
+    return counts;
+  }
+
+  public Map<String, Long> getInFlightCounts () {
+    Map<String, Long> counts = new LinkedHashMap<String, Long>();
+    for (int event = 0; event < EVENTS; event++) {
+      counts.put (EVENT_NAMES [event], getInFlightCount (event));
+    }
+    return counts;
+  }
+
+  public Map<String, Double> getMeanMillis () {
+    Map<String, Double> millis = new LinkedHashMap<String, Double>();
+    for (int event = 0; event < EVENTS; event++) {
+      millis.put (EVENT_NAMES [event], getMeanMillis (event));
+    }
+    return millis;
+  }
+
+  public Map<String, Double> getMaxMillis () {
+    Map<String, Double> millis = new LinkedHashMap<String, Double>();
+    for (int event = 0; event < EVENTS; event++) {
+      millis.put (EVENT_NAMES [event], getMaxMillis (event));
+    }
+    return millis;
+  }
+
+  public Map<String, Double> getMedianMillis () {
+    Map<String, Double> millis = new LinkedHashMap<String, Double>();
+    for (int event = 0; event < EVENTS; event++) {
+      millis.put (EVENT_NAMES [event], getPercentileMillis (event, 50));
+    }
+    return millis;
+  }
+
+  public Map<String, Double> getP99Millis () {
+    Map<String, Double> millis = new LinkedHashMap<String, Double>();
+    for (int event = 0; event < EVENTS; event++) {
+      millis.put (EVENT_NAMES [event], getPercentileMillis (event, 99));
+    }
+    return millis;
+  }
+
+  public long[] getBucketBoundsMicros () {
+    return BUCKET_BOUNDS_MICROS.clone();
+  }
+
+  public long[] histogram (String event) {
+    for (int i = 0; i < EVENTS; i++) {
+      if (EVENT_NAMES [i].equals (event)) {
+        return getHistogram (i);
+      }
+    }
+    throw new IllegalArgumentException ("Unknown event " + event);
+  }
+
+  /**
+    Start counting again from zero. Events in progress at the time are 
+    not counted as in flight afterwards.
+   */
+  public void reset () {
+    for (int event = 0; event < EVENTS; event++) {
+      received.set (event, 0);
+      completed.set (event, 0);
+      failed.set (event, 0);
+      totalNanos.set (event, 0);
+      maxNanos.set (event, 0);
+    }
+    for (int i = 0; i < histograms.length(); i++) {
+      histograms.set (i, 0);
+    }
+  }
+
+  /**
+    Make these metrics available through the platform MBean server, under
+    the name com.powersurgepub.xos2:type=EventMetrics,name=programName. 
+    Registering again has no effect.
+
+    @return True if the metrics are registered.
+    @param  programName The name of the program, to tell apart the
+                        metrics of several XOS contexts.
+   */
+  public synchronized boolean register (String programName) {
+    if (objectName != null) {
+      return true;
+    }
+    try {
+      ObjectName name = new ObjectName (OBJECT_NAME_PREFIX 
+          + ",name=" + ObjectName.quote (programName));
+      ManagementFactory.getPlatformMBeanServer().registerMBean (this, name);
+      objectName = name;
+      return true;
+    } catch (JMException e) {
+      return false;
+    }
+  }
+
+  /**
+    Remove these metrics from the platform MBean server.
+   */
+  public synchronized void unregister () {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean (objectName);
+    } catch (JMException e) {
+      // Already gone
+    }
+    objectName = null;
+  }
+
+} // end class XEventMetrics
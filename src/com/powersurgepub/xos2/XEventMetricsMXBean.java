@@ -0,0 +1,106 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.util.*;
+
+/**
+  The view of XEventMetrics offered through JMX, so that the handling of
+  platform events can be watched in a running program with tools such as
+  JConsole. Maps are keyed by event name: about, preferences, open-file,
+  open-uri, print-file and quit. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public interface XEventMetricsMXBean {
+
+  /**
+    Returns the number of events of each type whose handling has finished.
+
+    @return Finished events by event name.
+   */
+  public Map<String, Long> getCounts ();
+
+  /**
+    Returns the number of events of each type whose handler threw an 
+    exception, or that otherwise could not be completed.
+
+    @return Failed events by event name.
+   */
+  public Map<String, Long> getFailureCounts ();
+
+  /**
+    Returns the number of events of each type received but not yet 
+    finished.
+
+    @return Events in progress by event name.
+   */
+  public Map<String, Long> getInFlightCounts ();
+
+  /**
+    Returns the mean latency of each type of event.
+
+    @return Mean milliseconds from receipt to finish, by event name.
+   */
+  public Map<String, Double> getMeanMillis ();
+
+  /**
+    Returns the longest latency of each type of event.
+
+    @return Maximum milliseconds from receipt to finish, by event name.
+   */
+  public Map<String, Double> getMaxMillis ();
+
+  /**
+    Returns the median latency of each type of event, as the upper bound
+    of the histogram bucket in which it falls, or the maximum, if lower.
+
+    @return Median milliseconds, by event name.
+   */
+  public Map<String, Double> getMedianMillis ();
+
+  /**
+    Returns the 99th percentile latency of each type of event, as the 
+    upper bound of the histogram bucket in which it falls, or the maximum,
+    if lower.
+
+    @return 99th percentile milliseconds, by event name.
+   */
+  public Map<String, Double> getP99Millis ();
+
+  /**
+    Returns the upper bound of each histogram bucket but the last, which
+    holds everything longer.
+
+    @return Bucket bounds in microseconds.
+   */
+  public long[] getBucketBoundsMicros ();
+
+  /**
+    Returns the latency histogram for one type of event.
+
+    @return The number of events falling into each bucket.
+    @param  event The event name.
+   */
+  public long[] histogram (String event);
+
+  /**
+    Start counting again from zero.
+   */
+  public void reset ();
+
+} // end interface XEventMetricsMXBean
@@ -18,6 +18,8 @@ package com.powersurgepub.xos2;
 
   import java.awt.*;
   import java.io.*;
+  import java.util.concurrent.*;
+  import java.util.concurrent.atomic.*;
   import javax.swing.*;
 
 /**
@@ -34,6 +36,20 @@ package com.powersurgepub.xos2;
   choose a directory or a file) this class will not
   be able to respect the user's preference for a native file chooser. <p>
  
+  The Swing JFileChooser, which is slow to construct, is not built until it
+  is first needed. A program can also ask XOS to build one in advance, 
+  when the event dispatch thread is idle after initialization, so that the
+  first dialog using JFileChooser appears at once; see XOS.setPrewarmFileChooser. Directories
+  are listed for JFileChooser in the background, by XFileSystemView, so 
+  that a huge directory or a slow network share doesn't hold up the
+  dialog. <p>
+ 
+  An XSelectionProvider can answer in place of the user, for automated 
+  regression runs and batch jobs, either for one chooser or, by default,
+  for all of them. When it does, no dialog is constructed, and no display
+  is needed. When running headless without a provider, every dialog is 
+  treated as cancelled. <p>
+ 
   Following is typical code that would be used to access XFileChooser. <p>
  
   <pre><code>    
@@ -82,30 +98,207 @@ public class XFileChooser {
   public  static final  int           FILES_AND_DIRECTORIES          
       = JFileChooser.FILES_AND_DIRECTORIES;
   
-  private               XOS           xos                 = XOS.getShared();
+  /** Has any JFileChooser been constructed yet? */
+  private  static final AtomicBoolean constructed       = new AtomicBoolean();
+  
+  /** The most times building a JFileChooser in advance is put off. */
+  private  static final int     MAX_PREWARM_DEFERRALS = 100;
+  
+  /** A JFileChooser built in advance, not yet claimed by anyone. */
+  private  static final AtomicReference<Future<JFileChooser>> prewarmed
+      = new AtomicReference<Future<JFileChooser>>();
+  
+  /** Answers in place of the user for choosers that don't have their own. */
+  private  static volatile XSelectionProvider defaultSelectionProvider = null;
+  
+  private               XOS           xos;
   //* Default to use of Swing Chooser
   private               boolean       useSwingChooser     = true;
-  private               JFileChooser  swingChooser;
+  private               JFileChooser  swingChooser        = null;
   private               FileDialog    awtChooser;
   private               int           fileSelectionMode 
                                           = JFileChooser.FILES_ONLY;
   private               File          currentDirectory    = null;
   private               String        dialogTitle;
   private               File          selectedFile        = null;
+  private               XFileIndex    searchIndex         = null;
+  private               boolean       preview             = false;
+  private               XSelectionProvider selectionProvider = null;
   
   /** 
     Creates a new instance of XFileChooser. 
    */
   public XFileChooser() {
+    this (XOS.getShared());
+  } // end constructor
+  
+  /** 
+    Creates a new instance of XFileChooser that follows the preferences
+    of a particular XOS context. 
+   
+    @param xos The XOS context whose preferences should be followed.
+   */
+  public XFileChooser (XOS xos) {
+    this.xos = xos;
+    useSwingChooser = prefersSwingChooser (xos);
+  } // end constructor
+  
+  /**
+    Will choosers following the preferences of an XOS context use 
+    JFileChooser, when they have a choice?
+   
+    @return True if JFileChooser is preferred, false if FileDialog is.
+    @param  xos The XOS context whose preferences should be followed.
+   */
+  static boolean prefersSwingChooser (XOS xos) {
     if (xos.isRunningOnMacOS()) {
       String chooser 
           = xos.getPref (FILE_CHOOSER_KEY, FILE_CHOOSER_AWT);
-      useSwingChooser = (! chooser.equalsIgnoreCase (FILE_CHOOSER_AWT));
+      return (! chooser.equalsIgnoreCase (FILE_CHOOSER_AWT));
     } // end if running on a Mac
-    swingChooser = new JFileChooser();
-    swingChooser.putClientProperty
+    return true;
+  }
+  
+  /**
+    Build a JFileChooser, set up the way every XFileChooser wants it.
+   
+    @return A new JFileChooser.
+   */
+  static JFileChooser createSwingChooser () {
+    JFileChooser chooser = new JFileChooser (XFileSystemView.getShared());
+    chooser.putClientProperty
         ("JFileChooser.packageIsTraversable", "never");
-  } // end constructor
+    return chooser;
+  }
+  
+  /**
+    Offer a JFileChooser being built in the background to the next 
+    XFileChooser that needs one.
+   
+    @param chooser The JFileChooser, once it is built.
+   */
+  static void offerPrewarmed (Future<JFileChooser> chooser) {
+    prewarmed.set (chooser);
+  }
+  
+  /**
+    Build a JFileChooser on the event dispatch thread, to be claimed by the
+    next XFileChooser that needs one. So as not to delay anything the user
+    is waiting for, this is put off for as long as other events are 
+    waiting to be dispatched, within reason. If an XFileChooser needs a 
+    JFileChooser first, and cancels the future, nothing is built.
+   
+    @param xos     The XOS context whose startup is being timed.
+    @param chooser The future to be completed with the JFileChooser.
+   */
+  static void prewarmWhenIdle (final XOS xos, 
+      final CompletableFuture<JFileChooser> chooser) {
+    EventQueue.invokeLater (new Runnable() {
+      private int deferrals = 0;
+      public void run() {
+        if (chooser.isDone()) {
+          return;
+        }
+        if (deferrals < MAX_PREWARM_DEFERRALS
+            && Toolkit.getDefaultToolkit().getSystemEventQueue().peekEvent() 
+              != null) {
+          deferrals++;
+          EventQueue.invokeLater (this);
+          return;
+        }
+        XStartupTimer.Phase phase 
+            = xos.getStartupTimer().begin (XStartup.FILE_CHOOSER_PREWARM);
+        try {
+          chooser.complete (createSwingChooser());
+        } catch (RuntimeException e) {
+          chooser.completeExceptionally (e);
+        } finally {
+          xos.getStartupTimer().end (phase);
+        }
+      }
+    });
+  }
+  
+  /**
+    Returns the JFileChooser, building it, or claiming the one built in the
+    background, the first time it is needed, and bringing it up to date 
+    with any settings made so far.
+   
+    @return The Swing file chooser.
+   */
+  private JFileChooser getSwingChooser () {
+    if (swingChooser != null) {
+      return swingChooser;
+    }
+    XStartupTimer.Phase first = null;
+    if (constructed.compareAndSet (false, true)) {
+      first = xos.getStartupTimer().begin (XStartup.FIRST_FILE_CHOOSER);
+    }
+    JFileChooser chooser = null;
+    Future<JFileChooser> warm = prewarmed.getAndSet (null);
+    if (warm != null) {
+      if (warm.isDone()) {
+        try {
+          chooser = warm.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+          // Build a new one instead
+        } catch (CancellationException e) {
+          // Build a new one instead
+        }
+      } else {
+        // It would be built on this same thread, so build it now instead
+        warm.cancel (false);
+      }
+    }
+    if (chooser == null) {
+      chooser = createSwingChooser();
+    }
+    chooser.setFileSelectionMode (fileSelectionMode);
+    if (dialogTitle != null) {
+      chooser.setDialogTitle (dialogTitle);
+    }
+    if (currentDirectory != null) {
+      chooser.setCurrentDirectory (currentDirectory);
+    }
+    if (selectedFile != null) {
+      chooser.setSelectedFile (selectedFile);
+    }
+    swingChooser = chooser;
+    installAccessory();
+    if (first != null) {
+      xos.getStartupTimer().end (first);
+    }
+    return swingChooser;
+  } // end method getSwingChooser
+  
+  /**
+    Have the Swing chooser look again at its current directory whenever 
+    more of the directory's entries have been read in the background, or
+    the directory has changed, for as long as a dialog is showing.
+   
+    @return The listener doing so, to be removed once the dialog closes.
+   */
+  private XDirectoryListener rescanWhenListed () {
+    final JFileChooser chooser = getSwingChooser();
+    final AtomicBoolean pending = new AtomicBoolean();
+    XDirectoryListener rescanner = new XDirectoryListener() {
+      public void directoryChanged (File dir) {
+        if (dir.equals (chooser.getCurrentDirectory())
+            && pending.compareAndSet (false, true)) {
+          SwingUtilities.invokeLater (new Runnable() {
+            public void run() {
+              pending.set (false);
+              chooser.rescanCurrentDirectory();
+            }
+          });
+        }
+      }
+    };
+    XFileSystemView.getShared().addDirectoryListener (rescanner);
+    return rescanner;
+  }
   
   /**
     Sets the file selection mode. If Directories or Files,
@@ -116,7 +309,9 @@ public class XFileChooser {
    */
   public void setFileSelectionMode (int mode) {
     fileSelectionMode = mode;
-    swingChooser.setFileSelectionMode (mode);
+    if (swingChooser != null) {
+      swingChooser.setFileSelectionMode (mode);
+    }
     if (fileSelectionMode == DIRECTORIES_ONLY
         || fileSelectionMode == FILES_AND_DIRECTORIES
         ) {
@@ -133,7 +328,9 @@ public class XFileChooser {
    */
   public void setCurrentDirectory (File dir) {
     currentDirectory = dir;
-    swingChooser.setCurrentDirectory (dir);
+    if (swingChooser != null) {
+      swingChooser.setCurrentDirectory (dir);
+    }
     selectedFile = null;
   }
 
@@ -156,11 +353,149 @@ public class XFileChooser {
    @param target The file to be set.
    */
   public void setFile (File file) {
-    swingChooser.setSelectedFile (file);
-    currentDirectory = swingChooser.getCurrentDirectory();
+    if (swingChooser != null) {
+      swingChooser.setSelectedFile (file);
+      currentDirectory = swingChooser.getCurrentDirectory();
+    } else if (file != null && file.getParentFile() != null) {
+      // As JFileChooser would, show the folder containing the file
+      currentDirectory = file.getParentFile();
+    }
     selectedFile = file;
   }
   
+  /**
+    Let the user find files by typing part of their names, using an index 
+    of file names. The search field is only offered by the Swing chooser,
+    so a native chooser preferred by the user is not affected.
+   
+    @param index The index to be searched, or null for no search field.
+   */
+  public void setSearchIndex (XFileIndex index) {
+    searchIndex = index;
+    if (swingChooser != null) {
+      installAccessory();
+    }
+  }
+  
+  /**
+    Show a preview of the first lines of the selected file, when it holds 
+    text. Files are read in the background, so that choosing a large file,
+    or moving quickly through a folder, is not slowed down. As with the 
+    search field, the preview is only offered by the Swing chooser.
+   
+    @param preview True to show a preview, false for none.
+   */
+  public void setPreview (boolean preview) {
+    this.preview = preview;
+    if (swingChooser != null) {
+      installAccessory();
+    }
+  }
+  
+  /**
+    Give the Swing chooser whichever of the search field and the preview 
+    have been asked for, one above the other if both.
+   */
+  private void installAccessory () {
+    JComponent search = null;
+    if (searchIndex != null) {
+      search = new XFileSearchAccessory (swingChooser, searchIndex);
+    }
+    JComponent previewer = null;
+    if (preview) {
+      previewer = new XFilePreviewAccessory (swingChooser);
+    }
+    if (search != null && previewer != null) {
+      JPanel both = new JPanel (new GridLayout (2, 1, 0, 8));
+      both.add (search);
+      both.add (previewer);
+      swingChooser.setAccessory (both);
+    } else {
+      swingChooser.setAccessory (search != null ? search : previewer);
+    }
+  }
+  
+  /**
+    Have a provider choose files for this chooser, in place of the user.
+   
+    @param provider The provider to be used, or null to use the default 
+                    provider, if any, or else ask the user.
+   */
+  public void setSelectionProvider (XSelectionProvider provider) {
+    selectionProvider = provider;
+  }
+  
+  /**
+    Returns the provider that chooses files for this chooser.
+   
+    @return The provider set for this chooser, or null if there is none.
+   */
+  public XSelectionProvider getSelectionProvider () {
+    return selectionProvider;
+  }
+  
+  /**
+    Have a provider choose files, in place of the user, for every chooser 
+    that doesn't have a provider of its own.
+   
+    @param provider The provider to be used, or null to ask the user.
+   */
+  public static void setDefaultSelectionProvider 
+      (XSelectionProvider provider) {
+    defaultSelectionProvider = provider;
+  }
+  
+  /**
+    Returns the provider that chooses files for choosers without a 
+    provider of their own.
+   
+    @return The default provider, or null if there is none.
+   */
+  public static XSelectionProvider getDefaultSelectionProvider () {
+    return defaultSelectionProvider;
+  }
+  
+  /**
+    Is the choice to be made by a provider, or by nobody at all, rather 
+    than by the user?
+   
+    @return True if no dialog should be shown.
+   */
+  private boolean isProvided () {
+    return (selectionProvider != null 
+        || defaultSelectionProvider != null
+        || XOS.isHeadless());
+  }
+  
+  /**
+    Have the provider make the choice, without constructing a dialog.
+   
+    @return The file chosen by the provider, or null if there is no 
+            provider, or it made no choice.
+    @param  save True if a file is to be saved, false if one is to be 
+                 opened.
+   */
+  private File provide (boolean save) {
+    XSelectionProvider provider = selectionProvider;
+    if (provider == null) {
+      provider = defaultSelectionProvider;
+    }
+    File suggested = selectedFile;
+    selectedFile = null;
+    if (provider != null) {
+      selectedFile = provider.select (new XSelectionRequest 
+          (save, fileSelectionMode, dialogTitle, currentDirectory, suggested));
+    }
+    if (selectedFile != null && selectedFile.getParentFile() != null) {
+      // As JFileChooser would, remember the folder containing the choice
+      currentDirectory = selectedFile.getParentFile();
+      if (swingChooser != null) {
+        swingChooser.setSelectedFile (selectedFile);
+      }
+    }
+    return selectedFile;
+  } // end method provide
+  
   /**
     Sets the title of the dialog to be shown to the user.
    
@@ -168,7 +503,9 @@ public class XFileChooser {
    */
   public void setDialogTitle (String title) {
     dialogTitle = title;
-    swingChooser.setDialogTitle (title);
+    if (swingChooser != null) {
+      swingChooser.setDialogTitle (title);
+    }
   }
   
   /**
@@ -179,6 +516,9 @@ public class XFileChooser {
     @param  parent The parent Frame for the dialog.
    */
   public File showOpenDialog (Frame parent) {
+    if (isProvided()) {
+      return provide (false);
+    }
     String fileName;
     selectedFile = null;
     if (useSwingChooser
@@ -187,7 +527,13 @@ public class XFileChooser {
         //* || fileSelectionMode != FILES_ONLY) {
       
       // Using Swing Component JFileChooser
-      int result = swingChooser.showOpenDialog (parent);
+      XDirectoryListener rescanner = rescanWhenListed();
+      int result;
+      try {
+        result = swingChooser.showOpenDialog (parent);
+      } finally {
+        XFileSystemView.getShared().removeDirectoryListener (rescanner);
+      }
       if (result == JFileChooser.APPROVE_OPTION) {
         selectedFile = swingChooser.getSelectedFile();
         currentDirectory = swingChooser.getCurrentDirectory();
@@ -221,6 +567,9 @@ public class XFileChooser {
     @param  parent The parent Frame for the dialog.
    */
   public File showSaveDialog (Frame parent) {
+    if (isProvided()) {
+      return provide (true);
+    }
     String fileName;
     // selectedFile = null;
     if (useSwingChooser) {
@@ -228,7 +577,13 @@ public class XFileChooser {
       
       // Using Swing Component JFileChooser
       // System.out.println ("Using Swing File Chooser");
-      int result = swingChooser.showSaveDialog (parent);
+      XDirectoryListener rescanner = rescanWhenListed();
+      int result;
+      try {
+        result = swingChooser.showSaveDialog (parent);
+      } finally {
+        XFileSystemView.getShared().removeDirectoryListener (rescanner);
+      }
       if (result == JFileChooser.APPROVE_OPTION) {
         selectedFile = swingChooser.getSelectedFile();
         currentDirectory = swingChooser.getCurrentDirectory();
@@ -0,0 +1,951 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.file.*;
+  import java.nio.file.attribute.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import java.util.concurrent.locks.*;
+
+/**
+  An index of the names of the files and folders beneath a few root 
+  folders, for finding files by any part of their names in milliseconds, 
+  even among millions of files. <p>
+
+  Each name is indexed by the trigrams (runs of three characters) it
+  contains, ignoring case. A search for three or more characters looks up
+  the files containing every trigram in the search, and then checks each
+  one; a shorter search looks at every name. Names beginning with the 
+  search come first in the results. <p>
+
+  The index is kept in a file, so that it is ready soon after the program
+  starts. A background thread then brings it up to date, reading again
+  only the folders whose modification times have changed, and keeps it 
+  up to date, using a WatchService for as many folders as the platform 
+  allows, and looking for changes to the rest every so often. Changes are
+  saved to the index file a little while after they are made, and when 
+  the index is closed. <p>
+
+  Following is typical code that would be used to access XFileIndex. <p>
+
+  <pre><code>
+    XFileIndex index = new XFileIndex (new File (appFolder, "files.index"));
+    index.addRoot (new File (System.getProperty ("user.home"), "Projects"));
+    index.start();
+    ...
+    java.util.List&lt;File&gt; found = index.search ("readme", 50);
+    ...
+    index.close();
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XFileIndex {
+
+  /** The most results returned when no limit is given. */
+  public  static final int      DEFAULT_LIMIT       = 100;
+
+  /** 
+    The most folders watched for changes, staying below the usual Linux 
+    limit on inotify watches. 
+   */
+  public  static final int      MAX_WATCHED         = 8000;
+
+  /** How long after a change the index is saved. */
+  public  static final long     SAVE_DELAY_MILLIS   = 30000;
+
+  /** How often every folder is checked for changes. */
+  public  static final long     REFRESH_MINUTES     = 15;
+
+  private static final int      MAGIC               = 0x58464958;
+  private static final int      VERSION             = 1;
+
+  private static final long     NOT_LISTED          = -1;
+  private static final long     NOT_A_FOLDER        = -2;
+
+  private final File            indexFile;
+  private final ScheduledThreadPoolExecutor worker;
+  private final ReentrantReadWriteLock lock         = new ReentrantReadWriteLock();
+
+  /** The roots wanted. Used only on the worker thread. */
+  private final ArrayList<File> roots               = new ArrayList<File>();
+
+  // The entries, by number. Changed only on the worker thread, and only 
+  // with the write lock held. A removed entry has a null name.
+  private String[]              names               = new String [1024];
+  private String[]              lowerNames          = new String [1024];
+  private int[]                 parents             = new int [1024];
+  private long[]                modified            = new long [1024];
+  private IntList[]             children            = new IntList [1024];
+  private int                   count               = 0;
+  private int                   removed             = 0;
+
+  /** Entry numbers, in ascending order, for each trigram. */
+  private HashMap<Long, IntList> trigrams           = new HashMap<Long, IntList>();
+
+  // Folders being watched. Used only on the worker thread.
+  private WatchService          watcher             = null;
+  private HashMap<WatchKey, Integer> watched        = new HashMap<WatchKey, Integer>();
+  private HashMap<Integer, WatchKey> watchKeys      = new HashMap<Integer, WatchKey>();
+
+  private ScheduledFuture<?>    pendingSave         = null;
+  private boolean               dirty               = false;
+  private boolean               started             = false;
+  private boolean               startRequested      = false;
+  private volatile boolean      closed              = false;
+
+  private final CompletableFuture<XFileIndex> ready = new CompletableFuture<XFileIndex>();
+
+  /**
+    Creates an index, to be kept in the passed file. Nothing is read until
+    the index is started.
+
+    @param indexFile The file in which the index is kept.
+   */
+  public XFileIndex (File indexFile) {
+    this.indexFile = indexFile;
+    worker = new ScheduledThreadPoolExecutor 
+        (1, new XThreadFactory ("xos2-file-index"));
+    // A save waiting to happen is done by close instead
+    worker.setExecuteExistingDelayedTasksAfterShutdownPolicy (false);
+  }
+
+  /**
+    Index the files beneath a folder.
+
+    @param root The folder.
+   */
+  public void addRoot (File root) {
+    final File absolute = root.getAbsoluteFile();
+    worker.execute (new Runnable() {
+      public void run() {
+        if (roots.contains (absolute)) {
+          return;
+        }
+        roots.add (absolute);
+        if (started) {
+          refresh (rootEntry (absolute));
+          compactIfWorthwhile();
+        }
+      }
+    });
+  }
+
+  /**
+    Stop indexing the files beneath a folder.
+
+    @param root A folder passed to addRoot.
+   */
+  public void removeRoot (File root) {
+    final File absolute = root.getAbsoluteFile();
+    worker.execute (new Runnable() {
+      public void run() {
+        roots.remove (absolute);
+        if (started) {
+          int entry = findRoot (absolute);
+          if (entry >= 0) {
+            remove (entry);
+            changed();
+            compactIfWorthwhile();
+          }
+        }
+      }
+    });
+  }
+
+  /**
+    Load the index from its file, if there is one, and then bring it up to
+    date and keep it that way, in the background.
+
+    @return A future that completes once the index is first up to date.
+   */
+  public synchronized CompletableFuture<XFileIndex> start () {
+    if (startRequested) {
+      return ready;
+    }
+    startRequested = true;
+    worker.execute (new Runnable() {
+      public void run() {
+        if (started) {
+          return;
+        }
+        started = true;
+        load();
+        reconcileRoots();
+        refreshAll();
+        compactIfWorthwhile();
+        ready.complete (XFileIndex.this);
+      }
+    });
+    worker.scheduleWithFixedDelay (new Runnable() {
+      public void run() {
+        refreshAll();
+        compactIfWorthwhile();
+      }
+    }, REFRESH_MINUTES, REFRESH_MINUTES, TimeUnit.MINUTES);
+    return ready;
+  }
+
+  /**
+    Is the index up to date with the file system, as of when it was
+    started?
+
+    @return True once the first refresh is finished.
+   */
+  public boolean isReady () {
+    return ready.isDone();
+  }
+
+  /**
+    Returns the number of files and folders in the index.
+
+    @return The number of entries.
+   */
+  public int size () {
+    lock.readLock().lock();
+    try {
+      return count - removed;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+    Find files and folders whose names contain the passed text, ignoring 
+    case, returning at most DEFAULT_LIMIT of them.
+
+    @return The matching files, those whose names begin with the text
+            first.
+    @param  text The text to look for.
+   */
+  public List<File> search (String text) {
+    return search (text, DEFAULT_LIMIT);
+  }
+
+  /**
+    Find files and folders whose names contain the passed text, ignoring 
+    case.
+
+    @return The matching files, those whose names begin with the text
+            first.
+    @param  text  The text to look for.
+    @param  limit The most files to be returned.
+   */
+  public List<File> search (String text, int limit) {
+    String wanted = text.trim().toLowerCase (Locale.ROOT);
+    ArrayList<File> found = new ArrayList<File>();
+    if (wanted.length() == 0 || limit <= 0) {
+      return found;
+    }
+    lock.readLock().lock();
+    try {
+      int[] candidates = candidates (wanted);
+      int candidateCount = (candidates == null ? count : candidates.length);
+      // Names beginning with the text first, then the rest
+      for (int pass = 0; pass < 2 && found.size() < limit; pass++) {
+        for (int i = 0; i < candidateCount && found.size() < limit; i++) {
+          int entry = (candidates == null ? i : candidates [i]);
+          String lower = lowerNames [entry];
+          if (lower == null || parents [entry] < 0) {
+            continue;
+          }
+          boolean matches = (pass == 0 
+              ? lower.startsWith (wanted) 
+              : (! lower.startsWith (wanted)) && lower.contains (wanted));
+          if (matches) {
+            found.add (fileFor (entry));
+          }
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return found;
+  } // end method search
+
+  /**
+    Returns the entries whose names contain the passed text, found through
+    the two rarest of its trigrams, or null if the text is too short to 
+    have any trigrams.
+   */
+  private int[] candidates (String wanted) {
+    if (wanted.length() < 3) {
+      return null;
+    }
+    IntList rarest = null;
+    IntList nextRarest = null;
+    for (int i = 0; i + 3 <= wanted.length(); i++) {
+      IntList list = trigrams.get (trigram (wanted, i));
+      if (list == null) {
+        return new int [0];
+      }
+      if (rarest == null || list.size < rarest.size) {
+        nextRarest = rarest;
+        rarest = list;
+      } else if (list != rarest 
+          && (nextRarest == null || list.size < nextRarest.size)) {
+        nextRarest = list;
+      }
+    }
+    int[] result = new int [rarest.size];
+    int kept = 0;
+    for (int i = 0; i < rarest.size; i++) {
+      int entry = rarest.data [i];
+      if (nextRarest != null 
+          && Arrays.binarySearch (nextRarest.data, 0, nextRarest.size, entry) < 0) {
+        continue;
+      }
+      String lower = lowerNames [entry];
+      if (lower != null && lower.contains (wanted)) {
+        result [kept] = entry;
+        kept++;
+      }
+    }
+    return Arrays.copyOf (result, kept);
+  } // end method candidates
+
+  private static long trigram (String s, int start) {
+    return ((long)s.charAt (start) << 32) 
+        | ((long)s.charAt (start + 1) << 16) 
+        | s.charAt (start + 2);
+  }
+
+  /**
+    Returns the file for an entry, by following its parents to a root. 
+    Must be called with a lock held.
+   */
+  private File fileFor (int entry) {
+    if (parents [entry] < 0) {
+      return new File (names [entry]);
+    }
+    return new File (fileFor (parents [entry]), names [entry]);
+  }
+
+  /**
+    Save the index to its file now, rather than waiting.
+
+    @throws IOException If the index could not be written.
+   */
+  public void save ()
+      throws IOException {
+    Future<?> saving = worker.submit (new Callable<Void>() {
+      public Void call()
+          throws IOException {
+        write();
+        return null;
+      }
+    });
+    try {
+      saving.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException ("Interrupted while saving index");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException)e.getCause();
+      }
+      throw new IOException (e.getCause());
+    }
+  }
+
+  /**
+    Stop keeping the index up to date, and save it, if it has changed.
+   */
+  public void close () {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    worker.execute (new Runnable() {
+      public void run() {
+        if (pendingSave != null) {
+          pendingSave.cancel (false);
+        }
+        if (dirty) {
+          try {
+            write();
+          } catch (IOException e) {
+            // It will be brought up to date next time
+          }
+        }
+        if (watcher != null) {
+          try {
+            watcher.close();
+          } catch (IOException e) {
+            // Closing anyway
+          }
+        }
+      }
+    });
+    worker.shutdown();
+    try {
+      worker.awaitTermination (SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  } // end method close
+
+  // ----------------------------------------------------------------------
+  // Everything below runs on the worker thread.
+  // ----------------------------------------------------------------------
+
+  /**
+    Note that the index has changed, so that it will be saved before long.
+   */
+  private void changed () {
+    dirty = true;
+    if (pendingSave == null && ! closed) {
+      pendingSave = worker.schedule (new Runnable() {
+        public void run() {
+          try {
+            write();
+          } catch (IOException e) {
+            // Try again after the next change
+          }
+        }
+      }, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+    Add an entry to the index, returning its number. Must be called with 
+    the write lock held.
+   */
+  private int add (int parent, String name, boolean folder) {
+    if (count == names.length) {
+      int capacity = count * 2;
+      names = Arrays.copyOf (names, capacity);
+      lowerNames = Arrays.copyOf (lowerNames, capacity);
+      parents = Arrays.copyOf (parents, capacity);
+      modified = Arrays.copyOf (modified, capacity);
+      children = Arrays.copyOf (children, capacity);
+    }
+    int entry = count;
+    count++;
+    String lower = name.toLowerCase (Locale.ROOT);
+    names [entry] = name;
+    lowerNames [entry] = (lower.equals (name) ? name : lower);
+    parents [entry] = parent;
+    modified [entry] = (folder ? NOT_LISTED : NOT_A_FOLDER);
+    children [entry] = (folder ? new IntList() : null);
+    if (parent >= 0) {
+      children [parent].add (entry);
+      for (int i = 0; i + 3 <= lower.length(); i++) {
+        Long key = trigram (lower, i);
+        IntList list = trigrams.get (key);
+        if (list == null) {
+          list = new IntList();
+          trigrams.put (key, list);
+        }
+        // A name with the same trigram twice is listed once
+        if (list.size == 0 || list.data [list.size - 1] != entry) {
+          list.add (entry);
+        }
+      }
+    }
+    return entry;
+  } // end method add
+
+  /**
+    Remove an entry, and everything beneath it.
+   */
+  private void remove (int entry) {
+    lock.writeLock().lock();
+    try {
+      if (parents [entry] >= 0 && children [parents [entry]] != null) {
+        children [parents [entry]].removeValue (entry);
+      }
+      ArrayDeque<Integer> toRemove = new ArrayDeque<Integer>();
+      toRemove.push (entry);
+      while (! toRemove.isEmpty()) {
+        int next = toRemove.pop();
+        if (children [next] != null) {
+          for (int i = 0; i < children [next].size; i++) {
+            toRemove.push (children [next].data [i]);
+          }
+        }
+        unwatch (next);
+        names [next] = null;
+        lowerNames [next] = null;
+        children [next] = null;
+        removed++;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  } // end method remove
+
+  /**
+    Returns the entry for a root folder, adding it if need be.
+   */
+  private int rootEntry (File root) {
+    int entry = findRoot (root);
+    if (entry < 0) {
+      lock.writeLock().lock();
+      try {
+        entry = add (-1, root.getPath(), true);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+    return entry;
+  }
+
+  private int findRoot (File root) {
+    for (int entry = 0; entry < count; entry++) {
+      if (parents [entry] < 0 
+          && names [entry] != null 
+          && names [entry].equals (root.getPath())) {
+        return entry;
+      }
+    }
+    return -1;
+  }
+
+  /**
+    Add the roots wanted and remove the roots no longer wanted.
+   */
+  private void reconcileRoots () {
+    for (int entry = 0; entry < count; entry++) {
+      if (parents [entry] < 0 
+          && names [entry] != null
+          && ! roots.contains (new File (names [entry]))) {
+        remove (entry);
+      }
+    }
+    for (File root : roots) {
+      rootEntry (root);
+    }
+  }
+
+  /**
+    Check every folder beneath every root for changes.
+   */
+  private void refreshAll () {
+    if (closed) {
+      return;
+    }
+    for (int entry = 0; entry < count; entry++) {
+      if (parents [entry] < 0 && names [entry] != null) {
+        refresh (entry);
+      }
+    }
+  }
+
+  /**
+    Check a folder, and every folder beneath it, for changes, reading 
+    again the folders whose modification times have changed.
+   */
+  private void refresh (int top) {
+    boolean anyChanged = false;
+    ArrayDeque<Integer> toCheck = new ArrayDeque<Integer>();
+    toCheck.push (top);
+    while (! toCheck.isEmpty() && ! closed) {
+      int folder = toCheck.pop();
+      if (names [folder] == null) {
+        continue;
+      }
+      if (relistIfChanged (folder)) {
+        anyChanged = true;
+      }
+      IntList within = children [folder];
+      if (within != null) {
+        for (int i = 0; i < within.size; i++) {
+          int child = within.data [i];
+          if (modified [child] != NOT_A_FOLDER) {
+            toCheck.push (child);
+          }
+        }
+      }
+    }
+    if (anyChanged) {
+      changed();
+    }
+  } // end method refresh
+
+  /**
+    Read a folder again because the WatchService reported a change to it,
+    even if its modification time looks the same, and then read any new
+    folders within it.
+   */
+  private void refreshReported (int folder) {
+    File dir;
+    lock.readLock().lock();
+    try {
+      dir = fileFor (folder);
+    } finally {
+      lock.readLock().unlock();
+    }
+    if (! dir.isDirectory()) {
+      if (parents [folder] >= 0) {
+        remove (folder);
+        changed();
+      }
+      return;
+    }
+    relist (folder, dir, dir.lastModified());
+    IntList within = children [folder];
+    for (int i = 0; i < within.size; i++) {
+      int child = within.data [i];
+      if (modified [child] == NOT_LISTED) {
+        refresh (child);
+      }
+    }
+    changed();
+  }
+
+  /**
+    Read a folder again if its modification time has changed.
+
+    @return True if the index was changed.
+   */
+  private boolean relistIfChanged (int folder) {
+    File dir;
+    lock.readLock().lock();
+    try {
+      dir = fileFor (folder);
+    } finally {
+      lock.readLock().unlock();
+    }
+    long lastModified;
+    try {
+      BasicFileAttributes attributes = Files.readAttributes 
+          (dir.toPath(), BasicFileAttributes.class);
+      lastModified = (attributes.isDirectory() 
+          ? attributes.lastModifiedTime().toMillis() : -1);
+    } catch (IOException e) {
+      lastModified = -1;
+    }
+    if (lastModified < 0) {
+      // Gone, or no longer a folder
+      if (parents [folder] >= 0) {
+        remove (folder);
+        return true;
+      }
+      return false;
+    }
+    watch (folder, dir);
+    if (lastModified == modified [folder]) {
+      return false;
+    }
+    relist (folder, dir, lastModified);
+    return true;
+  }
+
+  /**
+    Read a folder's entries, and bring the index in line with them.
+   */
+  private void relist (int folder, File dir, long lastModified) {
+    HashSet<String> found = new HashSet<String>();
+    Path dirPath = dir.toPath();
+    try {
+      DirectoryStream<Path> stream = Files.newDirectoryStream (dirPath);
+      try {
+        for (Path path : stream) {
+          found.add (path.getFileName().toString());
+        }
+      } finally {
+        stream.close();
+      }
+    } catch (IOException e) {
+      // Index whatever could be read
+    } catch (DirectoryIteratorException e) {
+      // Likewise
+    }
+    // Drop what's gone, and keep what's still there. Only new names need 
+    // to be looked at, which saves a great deal of time on big folders. A
+    // folder replaced by a file of the same name is caught when the folder
+    // is next checked, but a file replaced by a folder of the same name is
+    // not noticed until the new folder is renamed or removed
+    IntList existing = children [folder];
+    for (int i = existing.size - 1; i >= 0; i--) {
+      int child = existing.data [i];
+      if (! found.remove (names [child])) {
+        remove (child);
+      }
+    }
+    ArrayList<String> added = new ArrayList<String> (found);
+    boolean[] folders = new boolean [added.size()];
+    for (int i = 0; i < added.size(); i++) {
+      folders [i] = Files.isDirectory 
+          (dirPath.resolve (added.get (i)), LinkOption.NOFOLLOW_LINKS);
+    }
+    lock.writeLock().lock();
+    try {
+      for (int i = 0; i < added.size(); i++) {
+        add (folder, added.get (i), folders [i]);
+      }
+      modified [folder] = lastModified;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  } // end method relist
+
+  /**
+    Ask the WatchService to report changes to a folder, if it isn't 
+    already, and there's room for another.
+   */
+  private void watch (int folder, File dir) {
+    if (watchKeys.containsKey (folder) || watchKeys.size() >= MAX_WATCHED) {
+      return;
+    }
+    try {
+      if (watcher == null) {
+        watcher = FileSystems.getDefault().newWatchService();
+        final WatchService watching = watcher;
+        new XThreadFactory ("xos2-file-index-watch").newThread 
+            (new Runnable() {
+          public void run() {
+            watchForChanges (watching);
+          }
+        }).start();
+      }
+      WatchKey key = dir.toPath().register (watcher,
+          StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_DELETE);
+      watched.put (key, folder);
+      watchKeys.put (folder, key);
+    } catch (IOException e) {
+      // Rely on the periodic refresh
+    } catch (UnsupportedOperationException e) {
+      // Likewise
+    }
+  }
+
+  private void unwatch (int folder) {
+    WatchKey key = watchKeys.remove (folder);
+    if (key != null) {
+      watched.remove (key);
+      key.cancel();
+    }
+  }
+
+  /**
+    Pass the changes reported by the WatchService to the worker thread.
+   */
+  private void watchForChanges (WatchService watching) {
+    while (! closed) {
+      final WatchKey key;
+      try {
+        key = watching.take();
+      } catch (InterruptedException e) {
+        return;
+      } catch (ClosedWatchServiceException e) {
+        return;
+      }
+      boolean overflow = false;
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+          overflow = true;
+        }
+      }
+      key.reset();
+      final boolean everything = overflow;
+      try {
+        worker.execute (new Runnable() {
+          public void run() {
+            Integer folder = watched.get (key);
+            if (everything) {
+              refreshAll();
+            } else if (folder != null && names [folder] != null) {
+              refreshReported (folder);
+            }
+            // Otherwise the folder is no longer watched, as when it has
+            // been deleted, and its remaining events don't matter
+            compactIfWorthwhile();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        return;
+      }
+    }
+  } // end method watchForChanges
+
+  /**
+    Renumber the entries to leave out those removed, once they are more
+    than half of all entries. Entry numbers change, so this is only done
+    between tasks.
+   */
+  private void compactIfWorthwhile () {
+    if (removed > 10000 && removed > count / 2) {
+      compact();
+    }
+  }
+
+  /**
+    Renumber the entries to leave out those removed, and rebuild the
+    trigrams to match.
+   */
+  private void compact () {
+    lock.writeLock().lock();
+    try {
+      String[] oldNames = names;
+      int[] oldParents = parents;
+      long[] oldModified = modified;
+      int oldCount = count;
+      int[] renumbered = new int [oldCount];
+      names = new String [Math.max (1024, oldCount - removed)];
+      lowerNames = new String [names.length];
+      parents = new int [names.length];
+      modified = new long [names.length];
+      children = new IntList [names.length];
+      count = 0;
+      removed = 0;
+      trigrams = new HashMap<Long, IntList>();
+      // Parents always come before their children
+      for (int entry = 0; entry < oldCount; entry++) {
+        renumbered [entry] = -1;
+        if (oldNames [entry] != null) {
+          int parent = (oldParents [entry] < 0 ? -1 : renumbered [oldParents [entry]]);
+          renumbered [entry] 
+              = add (parent, oldNames [entry], oldModified [entry] != NOT_A_FOLDER);
+          modified [renumbered [entry]] = oldModified [entry];
+        }
+      }
+      HashMap<WatchKey, Integer> oldWatched = watched;
+      watched = new HashMap<WatchKey, Integer>();
+      watchKeys = new HashMap<Integer, WatchKey>();
+      for (Map.Entry<WatchKey, Integer> watch : oldWatched.entrySet()) {
+        int entry = renumbered [watch.getValue()];
+        watched.put (watch.getKey(), entry);
+        watchKeys.put (entry, watch.getKey());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  } // end method compact
+
+  /**
+    Write the index to its file, replacing the file only once the whole
+    index has been written.
+   */
+  private void write ()
+      throws IOException {
+    pendingSave = null;
+    File parentDir = indexFile.getAbsoluteFile().getParentFile();
+    if (parentDir != null) {
+      parentDir.mkdirs();
+    }
+    File temp = new File (indexFile.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream (new BufferedOutputStream 
+        (new FileOutputStream (temp), 1 << 16));
+    lock.readLock().lock();
+    try {
+      out.writeInt (MAGIC);
+      out.writeInt (VERSION);
+      out.writeInt (count - removed);
+      int[] renumbered = new int [count];
+      int written = 0;
+      for (int entry = 0; entry < count; entry++) {
+        renumbered [entry] = -1;
+        if (names [entry] != null) {
+          out.writeInt (parents [entry] < 0 ? -1 : renumbered [parents [entry]]);
+          out.writeLong (modified [entry]);
+          out.writeUTF (names [entry]);
+          renumbered [entry] = written;
+          written++;
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+      out.close();
+    }
+    Files.move (temp.toPath(), indexFile.toPath(), 
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    dirty = false;
+  } // end method write
+
+  /**
+    Read the index from its file, if there is one. An index file that
+    cannot be read is ignored, and the index rebuilt.
+   */
+  private void load () {
+    if (! indexFile.exists()) {
+      return;
+    }
+    try {
+      DataInputStream in = new DataInputStream (new BufferedInputStream 
+          (new FileInputStream (indexFile), 1 << 16));
+      lock.writeLock().lock();
+      try {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+          return;
+        }
+        int entries = in.readInt();
+        for (int i = 0; i < entries; i++) {
+          int parent = in.readInt();
+          long lastModified = in.readLong();
+          String name = in.readUTF();
+          if (parent >= i) {
+            throw new IOException ("Index file is damaged");
+          }
+          int entry = add (parent, name, lastModified != NOT_A_FOLDER);
+          modified [entry] = lastModified;
+        }
+      } finally {
+        lock.writeLock().unlock();
+        in.close();
+      }
+    } catch (IOException e) {
+      clear();
+    }
+  } // end method load
+
+  private void clear () {
+    lock.writeLock().lock();
+    try {
+      Arrays.fill (names, 0, count, null);
+      Arrays.fill (lowerNames, 0, count, null);
+      Arrays.fill (children, 0, count, null);
+      count = 0;
+      removed = 0;
+      trigrams = new HashMap<Long, IntList>();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+    A growable list of ints, kept in ascending order by those who add to
+    it.
+   */
+  private static class IntList {
+
+    int[] data = new int [4];
+    int   size = 0;
+
+    void add (int value) {
+      if (size == data.length) {
+        data = Arrays.copyOf (data, size * 2);
+      }
+      data [size] = value;
+      size++;
+    }
+
+    void removeValue (int value) {
+      int at = Arrays.binarySearch (data, 0, size, value);
+      if (at >= 0) {
+        System.arraycopy (data, at + 1, data, at, size - at - 1);
+        size--;
+      }
+    }
+
+  } // end class IntList
+
+} // end class XFileIndex
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.awt.*;
+  import java.beans.*;
+  import java.io.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import java.util.concurrent.atomic.*;
+  import javax.swing.*;
+
+/**
+  A preview of the first lines of the text file selected in a JFileChooser,
+  for use as the chooser's accessory. Each file is read on a background 
+  thread, no further than the preview needs, so that a large file, or one
+  on a slow network share, never holds up the chooser. When the selection
+  changes, any read still in progress for the previous file is abandoned.
+  Previews are kept for the most recently selected files, identified by
+  XFileStamp, so that moving back and forth through a folder with the arrow
+  keys doesn't read the same files again, while a file changed since it was 
+  last previewed is read afresh. Files that don't appear to contain text
+  are not previewed. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XFilePreviewAccessory 
+    extends JPanel {
+
+  private static final long     serialVersionUID    = 1L;
+
+  /** The number of lines previewed, unless another is specified. */
+  public  static final int      DEFAULT_LINES       = 40;
+
+  /** The most characters read from any one file. */
+  public  static final int      MAX_CHARS           = 8192;
+
+  /** The number of previews kept. */
+  public  static final int      MAX_CACHED          = 256;
+
+  private static final ExecutorService reader 
+      = Executors.newSingleThreadExecutor 
+          (new XThreadFactory ("xos2-file-preview"));
+
+  private final int             lines;
+  private final JTextArea       previewArea         = new JTextArea();
+
+  /** Numbers each selection, so that only the latest one's preview is shown. */
+  private final AtomicInteger   selections          = new AtomicInteger();
+
+  /** The read for the latest selection, if it may still be in progress. */
+  private       Future<?>       outstanding         = null;
+
+  private final Map<XFileStamp, String> previews 
+      = Collections.synchronizedMap (new LinkedHashMap<XFileStamp, String> 
+          (MAX_CACHED, 0.75f, true) {
+        protected boolean removeEldestEntry 
+            (Map.Entry<XFileStamp, String> eldest) {
+          return size() > MAX_CACHED;
+        }
+      });
+
+  /**
+    Creates a preview accessory for a chooser, showing the default number
+    of lines.
+
+    @param chooser The chooser whose selected file is to be previewed.
+   */
+  public XFilePreviewAccessory (JFileChooser chooser) {
+    this (chooser, DEFAULT_LINES);
+  }
+
+  /**
+    Creates a preview accessory for a chooser.
+
+    @param chooser The chooser whose selected file is to be previewed.
+    @param lines   The number of lines to be shown from each file.
+   */
+  public XFilePreviewAccessory (final JFileChooser chooser, int lines) {
+    super (new BorderLayout());
+    this.lines = lines;
+    setBorder (BorderFactory.createEmptyBorder (0, 8, 0, 0));
+    previewArea.setEditable (false);
+    previewArea.setFont (new Font (Font.MONOSPACED, Font.PLAIN, 11));
+    JScrollPane scroller = new JScrollPane (previewArea);
+    scroller.setPreferredSize (new Dimension (240, 200));
+    add (scroller, BorderLayout.CENTER);
+    chooser.addPropertyChangeListener 
+        (JFileChooser.SELECTED_FILE_CHANGED_PROPERTY, 
+        new PropertyChangeListener() {
+      public void propertyChange (PropertyChangeEvent e) {
+        if (SwingUtilities.isDescendingFrom 
+            (XFilePreviewAccessory.this, chooser)) {
+          preview ((File)e.getNewValue());
+        } else {
+          // Replaced by another accessory
+          chooser.removePropertyChangeListener 
+              (JFileChooser.SELECTED_FILE_CHANGED_PROPERTY, this);
+        }
+      }
+    });
+    preview (chooser.getSelectedFile());
+  } // end constructor
+
+  /**
+    Abandon any read still in progress, and start reading the newly 
+    selected file in the background, showing its preview once it is ready,
+    unless the selection has changed again by then.
+   */
+  private void preview (final File file) {
+    final int selection = selections.incrementAndGet();
+    if (outstanding != null) {
+      outstanding.cancel (true);
+      outstanding = null;
+    }
+    previewArea.setText ("");
+    if (file == null) {
+      return;
+    }
+    outstanding = reader.submit (new Runnable() {
+      public void run() {
+        if (selection != selections.get()) {
+          return;
+        }
+        final String text = read (file);
+        if (text == null) {
+          return;
+        }
+        SwingUtilities.invokeLater (new Runnable() {
+          public void run() {
+            if (selection == selections.get()) {
+              previewArea.setText (text);
+              previewArea.setCaretPosition (0);
+            }
+          }
+        });
+      }
+    });
+  } // end method preview
+
+  /**
+    Returns the preview of a file, from those kept if the file hasn't 
+    changed since it was last read.
+
+    @return The preview text, empty if the file can't be previewed, or null
+            if the read was abandoned.
+   */
+  private String read (File file) {
+    if (! file.isFile()) {
+      return "";
+    }
+    try {
+      XFileStamp stamp = XFileStamp.of (file);
+      String text = previews.get (stamp);
+      if (text != null) {
+        return text;
+      }
+      if (! XOS.getContentSniffer().sniff (file).isText()) {
+        text = "";
+      } else {
+        StringBuilder joined = new StringBuilder();
+        for (String line : new XTextFile (file).readHead (lines, MAX_CHARS)) {
+          joined.append (line);
+          joined.append ('\n');
+        }
+        text = joined.toString();
+      }
+      previews.put (stamp, text);
+      return text;
+    } catch (InterruptedIOException e) {
+      return null;
+    } catch (IOException e) {
+      return "";
+    }
+  } // end method read
+
+} // end class XFilePreviewAccessory
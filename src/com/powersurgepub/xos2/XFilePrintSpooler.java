@@ -0,0 +1,156 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.file.*;
+  import javax.print.*;
+
+/**
+  A spooler that writes each job to a file in a folder, rather than to a
+  printer. Jobs are numbered in the order they arrive, carrying on from 
+  the highest number already in the folder, so that jobs not yet picked up
+  from an earlier run are never replaced. Each file appears complete, 
+  under its final name, once the job has been accepted.
+  Useful for printing to a folder watched by some other program, and for 
+  trying out printing on a machine without a printer. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XFilePrintSpooler 
+    implements XPrintSpooler {
+
+  /** The extension given to each job's file. */
+  public  static final String   JOB_EXT             = "prn";
+
+  private  File                 folder;
+  private  int                  jobNumber           = -1;
+
+  /**
+    Creates a spooler writing to a folder, which is created if need be.
+
+    @param folder The folder into which jobs are to be written.
+   */
+  public XFilePrintSpooler (File folder) {
+    this.folder = folder;
+  }
+
+  /**
+    Returns the folder into which jobs are written.
+
+    @return The spool folder.
+   */
+  public File getFolder () {
+    return folder;
+  }
+
+  public synchronized void submit (String jobName, Doc doc)
+      throws PrintException {
+    String safeName = jobName.replaceAll ("[^A-Za-z0-9._-]", "_");
+    Path temp = null;
+    try {
+      Files.createDirectories (folder.toPath());
+      if (jobNumber < 0) {
+        jobNumber = findHighestJobNumber();
+      }
+      Path target;
+      do {
+        jobNumber++;
+        target = folder.toPath().resolve 
+            (String.format ("%04d-%s.%s", jobNumber, safeName, JOB_EXT));
+      } while (Files.exists (target, LinkOption.NOFOLLOW_LINKS));
+      temp = Files.createTempFile (folder.toPath(), ".spool-", ".tmp");
+      OutputStream out = new BufferedOutputStream 
+          (Files.newOutputStream (temp));
+      try {
+        write (doc, out);
+      } finally {
+        out.close();
+      }
+      Files.move (temp, target, StandardCopyOption.ATOMIC_MOVE);
+      temp = null;
+    } catch (IOException e) {
+      throw new PrintException ("Could not spool " + jobName, e);
+    } finally {
+      if (temp != null) {
+        try {
+          Files.deleteIfExists (temp);
+        } catch (IOException e) {
+          // Leave it behind
+        }
+      }
+    }
+  } // end method submit
+
+  /**
+    Returns the highest number of any job already in the folder.
+
+    @return The highest job number, or zero if there are no jobs.
+   */
+  private int findHighestJobNumber ()
+      throws IOException {
+    int highest = 0;
+    DirectoryStream<Path> jobs 
+        = Files.newDirectoryStream (folder.toPath(), "*." + JOB_EXT);
+    try {
+      for (Path job : jobs) {
+        String name = job.getFileName().toString();
+        int dash = name.indexOf ('-');
+        if (dash > 0) {
+          try {
+            highest = Math.max 
+                (highest, Integer.parseInt (name.substring (0, dash)));
+          } catch (NumberFormatException e) {
+            // Not one of ours
+          }
+        }
+      }
+    } finally {
+      jobs.close();
+    }
+    return highest;
+  }
+
+  /**
+    Write a document's print data, as bytes if it can supply them, and 
+    otherwise as UTF-8 text.
+   */
+  private void write (Doc doc, OutputStream out)
+      throws IOException {
+    InputStream in = doc.getStreamForBytes();
+    if (in != null) {
+      try {
+        in.transferTo (out);
+      } finally {
+        in.close();
+      }
+      return;
+    }
+    Reader reader = doc.getReaderForText();
+    if (reader == null) {
+      throw new IOException ("Document supplies neither bytes nor text");
+    }
+    try {
+      Writer writer = new OutputStreamWriter (out, "UTF-8");
+      reader.transferTo (writer);
+      writer.flush();
+    } finally {
+      reader.close();
+    }
+  } // end method write
+
+} // end class XFilePrintSpooler
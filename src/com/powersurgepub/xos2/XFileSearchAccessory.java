@@ -0,0 +1,181 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.awt.*;
+  import java.awt.event.*;
+  import java.io.*;
+  import java.util.concurrent.*;
+  import java.util.concurrent.atomic.*;
+  import javax.swing.*;
+  import javax.swing.event.*;
+
+/**
+  A search field and list of results, for use as the accessory of a
+  JFileChooser, letting the user find a file by typing part of its name,
+  rather than by browsing folder by folder. Results come from an 
+  XFileIndex, and are looked up on a background thread as the user types.
+  Selecting a result takes the chooser to it; double-clicking a result, or
+  pressing Enter, chooses it. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XFileSearchAccessory 
+    extends JPanel {
+
+  private static final long     serialVersionUID    = 1L;
+
+  /** How long typing must pause before a search is made, in milliseconds. */
+  public  static final int      TYPING_DELAY_MILLIS = 150;
+
+  /** The most results shown. */
+  public  static final int      MAX_RESULTS         = 200;
+
+  private static final ExecutorService searcher 
+      = Executors.newSingleThreadExecutor 
+          (new XThreadFactory ("xos2-file-search"));
+
+  private final JFileChooser    chooser;
+  private final XFileIndex      index;
+  private final JTextField      searchField         = new JTextField (16);
+  private final DefaultListModel<File> results      = new DefaultListModel<File>();
+  private final JList<File>     resultList          = new JList<File> (results);
+  private final javax.swing.Timer typingTimer;
+
+  /** Numbers each search, so that only the latest one's results are shown. */
+  private final AtomicInteger   searches            = new AtomicInteger();
+
+  /**
+    Creates a search accessory for a chooser.
+
+    @param chooser The chooser to be driven by the search.
+    @param index   The index to be searched.
+   */
+  public XFileSearchAccessory (JFileChooser chooser, XFileIndex index) {
+    super (new BorderLayout (0, 4));
+    this.chooser = chooser;
+    this.index = index;
+    setBorder (BorderFactory.createEmptyBorder (0, 8, 0, 0));
+    add (searchField, BorderLayout.NORTH);
+    resultList.setSelectionMode (ListSelectionModel.SINGLE_SELECTION);
+    resultList.setCellRenderer (new ResultRenderer());
+    JScrollPane scroller = new JScrollPane (resultList);
+    scroller.setPreferredSize (new Dimension (220, 200));
+    add (scroller, BorderLayout.CENTER);
+
+    typingTimer = new javax.swing.Timer (TYPING_DELAY_MILLIS, 
+        new ActionListener() {
+      public void actionPerformed (ActionEvent e) {
+        search();
+      }
+    });
+    typingTimer.setRepeats (false);
+    searchField.getDocument().addDocumentListener (new DocumentListener() {
+      public void insertUpdate (DocumentEvent e) {
+        typingTimer.restart();
+      }
+      public void removeUpdate (DocumentEvent e) {
+        typingTimer.restart();
+      }
+      public void changedUpdate (DocumentEvent e) {
+        typingTimer.restart();
+      }
+    });
+    searchField.addActionListener (new ActionListener() {
+      public void actionPerformed (ActionEvent e) {
+        if (resultList.getSelectedValue() == null && results.size() > 0) {
+          resultList.setSelectedIndex (0);
+        }
+        choose();
+      }
+    });
+    resultList.addListSelectionListener (new ListSelectionListener() {
+      public void valueChanged (ListSelectionEvent e) {
+        File selected = resultList.getSelectedValue();
+        if (! e.getValueIsAdjusting() && selected != null) {
+          XFileSearchAccessory.this.chooser.setSelectedFile (selected);
+        }
+      }
+    });
+    resultList.addMouseListener (new MouseAdapter() {
+      public void mouseClicked (MouseEvent e) {
+        if (e.getClickCount() == 2) {
+          choose();
+        }
+      }
+    });
+  } // end constructor
+
+  /**
+    Look up the text typed so far, on a background thread, and show the
+    results once they are ready, unless more has been typed by then.
+   */
+  private void search () {
+    final String text = searchField.getText();
+    final int search = searches.incrementAndGet();
+    searcher.execute (new Runnable() {
+      public void run() {
+        if (search != searches.get()) {
+          return;
+        }
+        final java.util.List<File> found = index.search (text, MAX_RESULTS);
+        SwingUtilities.invokeLater (new Runnable() {
+          public void run() {
+            if (search == searches.get()) {
+              results.clear();
+              for (File file : found) {
+                results.addElement (file);
+              }
+            }
+          }
+        });
+      }
+    });
+  }
+
+  /**
+    Choose the selected result, as if the user had approved it in the 
+    chooser.
+   */
+  private void choose () {
+    File selected = resultList.getSelectedValue();
+    if (selected != null) {
+      chooser.setSelectedFile (selected);
+      chooser.approveSelection();
+    }
+  }
+
+  /**
+    Shows each result's name, with its folder as a tool tip.
+   */
+  private static class ResultRenderer 
+      extends DefaultListCellRenderer {
+
+    private static final long   serialVersionUID    = 1L;
+
+    public Component getListCellRendererComponent (JList<?> list, 
+        Object value, int index, boolean isSelected, boolean cellHasFocus) {
+      File file = (File)value;
+      super.getListCellRendererComponent 
+          (list, file.getName(), index, isSelected, cellHasFocus);
+      setToolTipText (file.getParent());
+      return this;
+    }
+
+  } // end class ResultRenderer
+
+} // end class XFileSearchAccessory
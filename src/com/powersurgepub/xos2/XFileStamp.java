@@ -0,0 +1,118 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.file.*;
+  import java.nio.file.attribute.*;
+
+/**
+  Identifies a particular version of a file's contents: the file itself,
+  by its file key (the device and inode on Unix systems) where the platform 
+  supplies one, or else by its absolute path, together with the file's size 
+  and time of last modification. If two stamps taken at different times are 
+  equal, then the file is assumed not to have changed in between. A stamp 
+  can be obtained with a single call to the file system, without opening 
+  the file. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public final class XFileStamp {
+
+  private final Object    fileKey;
+  private final long      size;
+  private final FileTime  lastModified;
+
+  private XFileStamp (Object fileKey, long size, FileTime lastModified) {
+    this.fileKey = fileKey;
+    this.size = size;
+    this.lastModified = lastModified;
+  }
+
+  /**
+    Take a stamp of a file as it is now.
+
+    @return The file's current stamp.
+    @param  file The file of interest.
+    @throws IOException If the file's attributes cannot be read.
+   */
+  public static XFileStamp of (File file)
+      throws IOException {
+    Path path = file.toPath().toAbsolutePath();
+    BasicFileAttributes attributes 
+        = Files.readAttributes (path, BasicFileAttributes.class);
+    Object key = attributes.fileKey();
+    if (key == null) {
+      key = path.normalize();
+    }
+    return new XFileStamp 
+        (key, attributes.size(), attributes.lastModifiedTime());
+  }
+
+  /**
+    Returns the identity of the file.
+
+    @return The platform's file key, or the absolute path if the platform
+            doesn't supply file keys.
+   */
+  public Object getFileKey () {
+    return fileKey;
+  }
+
+  /**
+    Returns the size of the file when the stamp was taken.
+
+    @return The size in bytes.
+   */
+  public long getSize () {
+    return size;
+  }
+
+  /**
+    Returns the time the file was last modified, as of when the stamp
+    was taken.
+
+    @return The time of last modification, in milliseconds since the epoch.
+   */
+  public long getLastModified () {
+    return lastModified.toMillis();
+  }
+
+  public boolean equals (Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (! (obj instanceof XFileStamp)) {
+      return false;
+    }
+    XFileStamp other = (XFileStamp)obj;
+    return (size == other.size
+        && lastModified.equals (other.lastModified)
+        && fileKey.equals (other.fileKey));
+  }
+
+  public int hashCode () {
+    return (fileKey.hashCode() * 31 + Long.hashCode (size)) * 31
+        + lastModified.hashCode();
+  }
+
+  public String toString () {
+    return fileKey.toString() + " " + String.valueOf (size) + " bytes " 
+        + lastModified.toString();
+  }
+
+} // end class XFileStamp
@@ -0,0 +1,471 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.file.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import javax.swing.*;
+  import javax.swing.filechooser.*;
+
+/**
+  A view of the file system for JFileChooser that lists directories on
+  background threads, and keeps the listings for reuse. Everything other
+  than listing a directory is passed along to the platform's own view. <p>
+
+  When a directory is first asked for, its entries are read on a 
+  background thread. The request waits briefly, and then returns whatever
+  has been read so far; listeners are told each time more entries have 
+  arrived, and once the listing is finished, so that a chooser can ask 
+  again, and the entries stream into it without the chooser ever waiting 
+  on a huge directory or a slow network share. <p>
+
+  Finished listings are kept for the most recently used directories. A
+  listing is reused for as long as its directory's modification time is 
+  unchanged, and is also dropped as soon as a WatchService reports an 
+  entry created in, or deleted from, the directory, which catches changes
+  made within the resolution of the modification time. Writes to the 
+  files themselves don't affect the listing. <p>
+
+  Following is typical code that would be used to access XFileSystemView. <p>
+
+  <pre><code>
+    JFileChooser chooser = new JFileChooser (XFileSystemView.getShared());
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XFileSystemView 
+    extends FileSystemView {
+
+  /** The most directories whose listings are kept. */
+  public  static final int      MAX_DIRECTORIES     = 32;
+
+  /** How long a request waits for a new listing, in milliseconds. */
+  public  static final long     FIRST_WAIT_MILLIS   = 150;
+
+  /** The least time between progress reports for one listing. */
+  public  static final long     PROGRESS_MILLIS     = 500;
+
+  private static final int      LIST_THREADS        = 2;
+
+  private static XFileSystemView shared             = null;
+
+  private final FileSystemView  platform;
+  private final ThreadPoolExecutor lister;
+  private final List<XDirectoryListener> listeners
+      = new CopyOnWriteArrayList<XDirectoryListener>();
+
+  /** Listings by directory, least recently used first. */
+  private final LinkedHashMap<File, Listing> listings 
+      = new LinkedHashMap<File, Listing> (16, 0.75f, true) {
+    protected boolean removeEldestEntry (Map.Entry<File, Listing> eldest) {
+      if (size() > MAX_DIRECTORIES) {
+        eldest.getValue().forget();
+        return true;
+      }
+      return false;
+    }
+  };
+
+  private WatchService          watcher             = null;
+  private boolean               watcherFailed       = false;
+
+  /**
+    Returns the view shared by every XFileChooser, creating it if this is
+    the first request.
+
+    @return The shared view.
+   */
+  public static XFileSystemView getShared () {
+    synchronized (XFileSystemView.class) {
+      if (shared == null) {
+        shared = new XFileSystemView (FileSystemView.getFileSystemView());
+      }
+      return shared;
+    }
+  }
+
+  /**
+    Creates a view that lists directories in the background, and passes
+    everything else to another view.
+
+    @param platform The view to be used for everything but listings.
+   */
+  public XFileSystemView (FileSystemView platform) {
+    this.platform = platform;
+    lister = new ThreadPoolExecutor (LIST_THREADS, LIST_THREADS,
+        30, TimeUnit.SECONDS, 
+        new LinkedBlockingQueue<Runnable>(),
+        new XThreadFactory ("xos2-dir-list"));
+    lister.allowCoreThreadTimeOut (true);
+  }
+
+  /**
+    Be told when listings change.
+
+    @param listener The listener to be told.
+   */
+  public void addDirectoryListener (XDirectoryListener listener) {
+    listeners.add (listener);
+  }
+
+  /**
+    Stop being told when listings change.
+
+    @param listener The listener to be removed.
+   */
+  public void removeDirectoryListener (XDirectoryListener listener) {
+    listeners.remove (listener);
+  }
+
+  /**
+    Returns the entries of a directory read so far, waiting briefly for a 
+    listing that is not yet finished.
+   */
+  public File[] getFiles (File dir, boolean useFileHiding) {
+    // Virtual folders, such as those of the Windows shell, are left to the 
+    // platform view
+    if (dir == null || dir.getClass() != File.class || ! dir.isDirectory()) {
+      return platform.getFiles (dir, useFileHiding);
+    }
+    Listing listing = getListing (dir);
+    listing.await (FIRST_WAIT_MILLIS);
+    return listing.snapshot (useFileHiding);
+  }
+
+  /**
+    Returns an up to date listing of a directory, starting a new one if
+    need be.
+   */
+  private Listing getListing (File dir) {
+    long modified = dir.lastModified();
+    synchronized (listings) {
+      Listing listing = listings.get (dir);
+      // A listing still being read is kept, even if the directory has 
+      // changed, so that a busy directory isn't read over and over
+      if (listing != null 
+          && (listing.modified == modified || ! listing.isComplete())
+          && ! listing.stale) {
+        return listing;
+      }
+      if (listing != null) {
+        listing.forget();
+      }
+      final Listing fresh = new Listing (dir, modified);
+      listings.put (dir, fresh);
+      watch (fresh);
+      lister.execute (new Runnable() {
+        public void run() {
+          fresh.read();
+        }
+      });
+      return fresh;
+    }
+  }
+
+  /**
+    Have the WatchService report changes to a listing's directory.
+   */
+  private void watch (Listing listing) {
+    if (watcherFailed) {
+      return;
+    }
+    try {
+      if (watcher == null) {
+        watcher = FileSystems.getDefault().newWatchService();
+        Thread watching = new XThreadFactory ("xos2-dir-watch").newThread
+            (new Runnable() {
+          public void run() {
+            watchForChanges();
+          }
+        });
+        watching.start();
+      }
+      // A listing holds only names, so writes to the files don't matter
+      listing.key = listing.dir.toPath().register (watcher,
+          StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_DELETE);
+    } catch (IOException e) {
+      // Rely on modification times alone
+    } catch (UnsupportedOperationException e) {
+      watcherFailed = true;
+    }
+  }
+
+  /**
+    Drop the listing of each directory the WatchService reports as changed.
+   */
+  private void watchForChanges () {
+    while (true) {
+      WatchKey key;
+      try {
+        key = watcher.take();
+      } catch (InterruptedException e) {
+        return;
+      } catch (ClosedWatchServiceException e) {
+        return;
+      }
+      key.pollEvents();
+      File dir = ((Path)key.watchable()).toFile();
+      boolean dropped = false;
+      synchronized (listings) {
+        Listing listing = listings.get (dir);
+        if (listing != null && listing.key == key) {
+          listings.remove (dir);
+          listing.forget();
+          dropped = true;
+        }
+      }
+      key.cancel();
+      if (dropped) {
+        fireDirectoryChanged (dir);
+      }
+    }
+  }
+
+  /**
+    Forget every listing kept, so that each directory will be read again.
+   */
+  public void clear () {
+    synchronized (listings) {
+      for (Listing listing : listings.values()) {
+        listing.forget();
+      }
+      listings.clear();
+    }
+  }
+
+  private void fireDirectoryChanged (File dir) {
+    for (XDirectoryListener listener : listeners) {
+      try {
+        listener.directoryChanged (dir);
+      } catch (RuntimeException e) {
+        // One listener's trouble mustn't stop the others hearing
+      }
+    }
+  }
+
+  /**
+    The entries of one directory, as read so far.
+   */
+  private class Listing {
+
+    private final File          dir;
+    private final long          modified;
+    private final ArrayList<File> files         = new ArrayList<File>();
+    private final BitSet        hidden          = new BitSet();
+    private boolean             complete        = false;
+    private volatile boolean    stale           = false;
+    private WatchKey            key             = null;
+
+    Listing (File dir, long modified) {
+      this.dir = dir;
+      this.modified = modified;
+    }
+
+    /**
+      Read the directory's entries, reporting progress along the way.
+     */
+    void read () {
+      long lastReport = System.nanoTime();
+      try {
+        DirectoryStream<Path> stream = Files.newDirectoryStream (dir.toPath());
+        try {
+          for (Path path : stream) {
+            if (stale) {
+              break;
+            }
+            File file = path.toFile();
+            boolean isHidden = platform.isHiddenFile (file);
+            synchronized (this) {
+              if (isHidden) {
+                hidden.set (files.size());
+              }
+              files.add (file);
+            }
+            long now = System.nanoTime();
+            if (now - lastReport 
+                >= TimeUnit.MILLISECONDS.toNanos (PROGRESS_MILLIS)) {
+              lastReport = now;
+              fireDirectoryChanged (dir);
+            }
+          }
+        } finally {
+          stream.close();
+        }
+      } catch (IOException e) {
+        // Show whatever could be read, as the platform view would
+      } catch (DirectoryIteratorException e) {
+        // Likewise
+      } finally {
+        synchronized (this) {
+          complete = true;
+          notifyAll();
+        }
+      }
+      fireDirectoryChanged (dir);
+    } // end method read
+
+    synchronized boolean isComplete () {
+      return complete;
+    }
+
+    /**
+      Wait for the listing to be finished, for no longer than the passed 
+      time.
+     */
+    synchronized void await (long millis) {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos (millis);
+      long remaining = deadline - System.nanoTime();
+      while (! complete && remaining > 0) {
+        try {
+          TimeUnit.NANOSECONDS.timedWait (this, remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        remaining = deadline - System.nanoTime();
+      }
+    }
+
+    /**
+      Returns the entries read so far.
+     */
+    synchronized File[] snapshot (boolean useFileHiding) {
+      if (! useFileHiding) {
+        return files.toArray (new File [files.size()]);
+      }
+      File[] shown = new File [files.size() - hidden.cardinality()];
+      int next = 0;
+      for (int i = 0; i < files.size(); i++) {
+        if (! hidden.get (i)) {
+          shown [next] = files.get (i);
+          next++;
+        }
+      }
+      return shown;
+    }
+
+    /**
+      Stop reading the directory, and stop watching it.
+     */
+    void forget () {
+      stale = true;
+      if (key != null) {
+        key.cancel();
+      }
+    }
+
+  } // end class Listing
+
+  public File createNewFolder (File containingDir)
+      throws IOException {
+    return platform.createNewFolder (containingDir);
+  }
+
+  public boolean isRoot (File f) {
+    return platform.isRoot (f);
+  }
+
+  public Boolean isTraversable (File f) {
+    return platform.isTraversable (f);
+  }
+
+  public String getSystemDisplayName (File f) {
+    return platform.getSystemDisplayName (f);
+  }
+
+  public String getSystemTypeDescription (File f) {
+    return platform.getSystemTypeDescription (f);
+  }
+
+  public Icon getSystemIcon (File f) {
+    return platform.getSystemIcon (f);
+  }
+
+  public boolean isParent (File folder, File file) {
+    return platform.isParent (folder, file);
+  }
+
+  public File getChild (File parent, String fileName) {
+    return platform.getChild (parent, fileName);
+  }
+
+  public boolean isFileSystem (File f) {
+    return platform.isFileSystem (f);
+  }
+
+  public boolean isHiddenFile (File f) {
+    return platform.isHiddenFile (f);
+  }
+
+  public boolean isFileSystemRoot (File dir) {
+    return platform.isFileSystemRoot (dir);
+  }
+
+  public boolean isDrive (File dir) {
+    return platform.isDrive (dir);
+  }
+
+  public boolean isFloppyDrive (File dir) {
+    return platform.isFloppyDrive (dir);
+  }
+
+  public boolean isComputerNode (File dir) {
+    return platform.isComputerNode (dir);
+  }
+
+  public File[] getRoots () {
+    return platform.getRoots();
+  }
+
+  public File getHomeDirectory () {
+    return platform.getHomeDirectory();
+  }
+
+  public File getDefaultDirectory () {
+    return platform.getDefaultDirectory();
+  }
+
+  public File createFileObject (File dir, String filename) {
+    return platform.createFileObject (dir, filename);
+  }
+
+  public File createFileObject (String path) {
+    return platform.createFileObject (path);
+  }
+
+  public File getParentDirectory (File dir) {
+    return platform.getParentDirectory (dir);
+  }
+
+  public File[] getChooserComboBoxFiles () {
+    return platform.getChooserComboBoxFiles();
+  }
+
+  public boolean isLink (File file) {
+    return platform.isLink (file);
+  }
+
+  public File getLinkLocation (File file)
+      throws FileNotFoundException {
+    return platform.getLinkLocation (file);
+  }
+
+} // end class XFileSystemView
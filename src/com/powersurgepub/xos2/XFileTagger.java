@@ -0,0 +1,252 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+
+/**
+  Applies file type and creator tags to files in the background, so that
+  the thread writing a file need not wait for the platform to record them.
+  Requests are queued, and a single background thread applies whatever has
+  accumulated as one batch, using the current platform provider. If a file
+  is tagged again before its earlier request has been applied, only the
+  later request is applied. <p>
+
+  Programs should call flush before they exit, to wait for any outstanding
+  tags to be applied. As a last resort, the tagger also flushes itself,
+  for a limited time, when the JVM shuts down. <p>
+
+  Following is typical code that would be used to access XFileTagger. <p>
+
+  <pre><code>
+    XFileTagger tagger = XOS.getFileTagger();
+    tagger.tag (outFile, XOS.FILE_TYPE_TEXT, XOS.FILE_CREATOR_TEXT);
+    ...
+    tagger.flush();
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XFileTagger {
+
+  /** How long the JVM's shutdown will wait for outstanding tags. */
+  public  static final long     FLUSH_AT_EXIT_MILLIS  = 2000;
+
+  private XPlatformProvider     provider;
+  private ExecutorService       executor;
+
+  private final Object          lock                  = new Object();
+
+  /** Requests not yet applied: the type and creator for each file. */
+  private LinkedHashMap<File, int[]> pending          
+      = new LinkedHashMap<File, int[]>();
+
+  /** Is a batch scheduled or being applied? */
+  private boolean               draining              = false;
+
+  /** The number of requests made. */
+  private long                  requested             = 0;
+
+  /** The number of requests made before the last batch was applied. */
+  private long                  completed             = 0;
+
+  private long                  batches               = 0;
+  private long                  tagged                = 0;
+  private long                  failed                = 0;
+
+  /**
+    Creates a tagger that will apply tags with the passed provider.
+
+    @param provider The provider to apply the tags, or null if tags are
+                    to be discarded, since the platform has no use for them.
+   */
+  public XFileTagger (XPlatformProvider provider) {
+    this.provider = provider;
+    executor = Executors.newSingleThreadExecutor 
+        (new XThreadFactory ("xos2-tagger"));
+    Runtime.getRuntime().addShutdownHook 
+        (new Thread (new Runnable() {
+      public void run() {
+        flush (FLUSH_AT_EXIT_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    }, "xos2-tagger-exit"));
+  }
+
+  /**
+    Queue a request to give a file a type and creator.
+
+    @param file    A File that has already been created.
+    @param type    A standard Mac OS File Type.
+    @param creator A standard Mac OS File Creator.
+   */
+  public void tag (File file, int type, int creator) {
+    if (provider == null) {
+      return;
+    }
+    synchronized (lock) {
+      pending.put (file, new int[] {type, creator});
+      requested++;
+      if (! draining) {
+        draining = true;
+        executor.execute (new Runnable() {
+          public void run() {
+            drain();
+          }
+        });
+      }
+    }
+  }
+
+  /**
+    Queue a request to designate a file as a text file.
+
+    @param file A File that has already been created.
+   */
+  public void tagAsText (File file) {
+    tag (file, XOS.FILE_TYPE_TEXT, XOS.FILE_CREATOR_TEXT);
+  }
+
+  /**
+    Apply batches of requests until there are none left.
+   */
+  private void drain () {
+    while (true) {
+      ArrayList<Map.Entry<File, int[]>> batch;
+      long upTo;
+      synchronized (lock) {
+        if (pending.isEmpty()) {
+          draining = false;
+          lock.notifyAll();
+          return;
+        }
+        batch = new ArrayList<Map.Entry<File, int[]>> (pending.entrySet());
+        pending = new LinkedHashMap<File, int[]>();
+        upTo = requested;
+      }
+      int ok = 0;
+      for (Map.Entry<File, int[]> request : batch) {
+        if (apply (request.getKey(), request.getValue())) {
+          ok++;
+        }
+      }
+      synchronized (lock) {
+        completed = upTo;
+        batches++;
+        tagged = tagged + ok;
+        failed = failed + (batch.size() - ok);
+        lock.notifyAll();
+      }
+    }
+  }
+
+  private boolean apply (File file, int[] tags) {
+    try {
+      boolean typeOK = provider.setFileType (file, tags [0]);
+      boolean creatorOK = provider.setFileCreator (file, tags [1]);
+      return (typeOK && creatorOK);
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+    Wait until every request made so far has been applied.
+
+    @return True if every request was applied, false if the wait was
+            interrupted.
+   */
+  public boolean flush () {
+    return flush (Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+    Wait, for no more than the given time, until every request made so far 
+    has been applied.
+
+    @return True if every request was applied, false if time ran out or
+            the wait was interrupted.
+    @param  timeout The maximum time to wait.
+    @param  unit    The unit of the timeout.
+   */
+  public boolean flush (long timeout, TimeUnit unit) {
+    long start = System.nanoTime();
+    long limit = unit.toNanos (timeout);
+    synchronized (lock) {
+      long target = requested;
+      while (completed < target) {
+        long remaining = limit - (System.nanoTime() - start);
+        if (remaining <= 0) {
+          return false;
+        }
+        try {
+          TimeUnit.NANOSECONDS.timedWait (lock, remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+    Returns the number of requests waiting to be applied.
+
+    @return The number of files waiting to be tagged.
+   */
+  public int getPendingCount () {
+    synchronized (lock) {
+      return pending.size();
+    }
+  }
+
+  /**
+    Returns the number of batches applied.
+
+    @return The number of batches.
+   */
+  public long getBatchCount () {
+    synchronized (lock) {
+      return batches;
+    }
+  }
+
+  /**
+    Returns the number of files successfully tagged.
+
+    @return The number of files tagged.
+   */
+  public long getTaggedCount () {
+    synchronized (lock) {
+      return tagged;
+    }
+  }
+
+  /**
+    Returns the number of files that could not be tagged.
+
+    @return The number of failures.
+   */
+  public long getFailedCount () {
+    synchronized (lock) {
+      return failed;
+    }
+  }
+
+} // end class XFileTagger
@@ -0,0 +1,498 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.*;
+  import java.nio.charset.*;
+  import java.nio.file.*;
+  import java.nio.file.attribute.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import java.util.regex.*;
+
+/**
+  A find and replace operation that can be applied to every text file
+  within a directory tree. Files are processed in parallel. Each file is
+  first scanned for matches, and only files containing at least one match
+  are rewritten. Rewritten files are written to a temporary file in the same
+  directory, which then atomically replaces the original, so that an
+  interrupted run never leaves a partially written file behind. Files that
+  are not valid in the character set being used, such as binary files, are
+  left alone, and reported as errors, rather than being rewritten with 
+  their undecodable bytes replaced. <p>
+
+  Literal substitutions are applied with an XReplacer, streaming each file
+  without reading it entirely into memory. Regular expressions are compiled
+  once and cached, but each matching file is read into memory, since
+  a regular expression may need to look arbitrarily far ahead. <p>
+
+  Following is typical code that would be used to access XFindReplace. <p>
+
+  <pre><code>
+    XFindReplace rename = new XFindReplace ("Two Due", "iWisdom");
+    rename.setFileNameGlob ("*.{txt,html}");
+    rename.setDryRun (true);
+    XFindReplace.Report report = rename.run (projectFolder);
+    System.out.println (report.getMatchCount() + " matches in "
+        + report.getFilesMatched() + " files");
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XFindReplace {
+
+  /** Compiled regular expressions, keyed by flags and expression. */
+  private  static final ConcurrentHashMap<String, Pattern> patterns
+      = new ConcurrentHashMap<String, Pattern>();
+
+  /** Upper limit on the number of regular expressions to be cached. */
+  private  static final int     MAX_CACHED_PATTERNS = 256;
+
+  /** Separates the flags from the expression in a pattern cache key. */
+  private  static final String  SLASH_KEY           = "/";
+
+  private  XReplacer            replacer            = null;
+  private  Pattern              pattern             = null;
+  private  String               patternReplacement  = null;
+
+  private  Charset              charset             = Charset.defaultCharset();
+  private  int                  threads
+      = Runtime.getRuntime().availableProcessors();
+  private  boolean              dryRun              = false;
+  private  boolean              skipHidden          = true;
+  private  PathMatcher          fileNameMatcher     = null;
+
+  /**
+    Creates a find and replace operation for a single literal string.
+
+    @param fromString String to be replaced.
+    @param toString   Replacement string.
+   */
+  public XFindReplace (String fromString, String toString) {
+    this.replacer = new XReplacer (fromString, toString);
+  }
+
+  /**
+    Creates a find and replace operation for a table of literal strings.
+
+    @param substitutions Map whose keys are the strings to be replaced, and
+                         whose values are the strings to replace them with.
+   */
+  public XFindReplace (Map<String, String> substitutions) {
+    this.replacer = new XReplacer (substitutions);
+  }
+
+  /**
+    Creates a find and replace operation using an existing replacer.
+
+    @param replacer The substitutions to be made.
+   */
+  public XFindReplace (XReplacer replacer) {
+    this.replacer = replacer;
+  }
+
+  /**
+    Creates a find and replace operation for a regular expression.
+
+    @param pattern     The pattern to be found, as returned by getPattern.
+    @param replacement The replacement, which may refer to captured groups
+                       in the usual way ($1, $2, etc.).
+   */
+  public XFindReplace (Pattern pattern, String replacement) {
+    this.pattern = pattern;
+    this.patternReplacement = replacement;
+  }
+
+  /**
+    Returns a compiled regular expression, compiling it only if it has not
+    been requested before.
+
+    @return The compiled pattern.
+    @param regex The regular expression.
+    @param flags Match flags, as for Pattern.compile.
+   */
+  public static Pattern getPattern (String regex, int flags) {
+    String key = String.valueOf (flags) + SLASH_KEY + regex;
+    Pattern compiled = patterns.get (key);
+    if (compiled == null) {
+      compiled = Pattern.compile (regex, flags);
+      if (patterns.size() >= MAX_CACHED_PATTERNS) {
+        patterns.clear();
+      }
+      Pattern earlier = patterns.putIfAbsent (key, compiled);
+      if (earlier != null) {
+        compiled = earlier;
+      }
+    }
+    return compiled;
+  }
+
+  /**
+    Returns a compiled regular expression, compiling it only if it has not
+    been requested before.
+
+    @return The compiled pattern.
+    @param regex The regular expression.
+   */
+  public static Pattern getPattern (String regex) {
+    return getPattern (regex, 0);
+  }
+
+  /**
+    Set the character set used to read and write files. Defaults to the
+    platform default, as used by XTextFile.
+
+    @param charset The character set to be used.
+   */
+  public void setCharset (Charset charset) {
+    this.charset = charset;
+  }
+
+  /**
+    Set the number of files to be processed at the same time.
+
+    @param threads The number of worker threads.
+   */
+  public void setThreads (int threads) {
+    this.threads = Math.max (1, threads);
+  }
+
+  /**
+    In a dry run, files are scanned and matches counted, but no files are
+    changed.
+
+    @param dryRun True if no files should be changed.
+   */
+  public void setDryRun (boolean dryRun) {
+    this.dryRun = dryRun;
+  }
+
+  public boolean isDryRun () {
+    return dryRun;
+  }
+
+  /**
+    Indicate whether hidden files and directories (including those whose
+    names begin with a period) should be skipped. Defaults to true.
+
+    @param skipHidden True to skip hidden files and directories.
+   */
+  public void setSkipHidden (boolean skipHidden) {
+    this.skipHidden = skipHidden;
+  }
+
+  /**
+    Limit processing to files whose names match the passed glob pattern.
+
+    @param glob A glob such as "*.txt" or "*.{htm,html}", or null to
+                process all files.
+   */
+  public void setFileNameGlob (String glob) {
+    if (glob == null || glob.length() == 0) {
+      fileNameMatcher = null;
+    } else {
+      fileNameMatcher = FileSystems.getDefault().getPathMatcher ("glob:" + glob);
+    }
+  }
+
+  /**
+    Apply the find and replace operation to a single file, or to every
+    eligible file within a directory tree.
+
+    @return A report of the matches found and files changed.
+    @param root A file, or the top directory of the tree to be processed.
+    @throws IOException If the tree cannot be walked.
+   */
+  public Report run (File root)
+      throws IOException {
+
+    final Report report = new Report();
+    final ExecutorService executor = Executors.newFixedThreadPool
+        (threads, new XThreadFactory ("xos2-find-replace"));
+    final ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+    final ArrayList<Path> submitted = new ArrayList<Path>();
+    final Path top = root.toPath();
+    try {
+      Files.walkFileTree (top, new SimpleFileVisitor<Path>() {
+
+        public FileVisitResult preVisitDirectory
+            (Path dir, BasicFileAttributes attrs) {
+          if (skipHidden && (! dir.equals (top)) && isHidden (dir)) {
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        public FileVisitResult visitFile
+            (final Path file, BasicFileAttributes attrs) {
+          if (attrs.isRegularFile()
+              && (! (skipHidden && isHidden (file)))
+              && (fileNameMatcher == null
+                || fileNameMatcher.matches (file.getFileName()))) {
+            futures.add (executor.submit (new Runnable() {
+              public void run() {
+                processFile (file, report);
+              }
+            }));
+            submitted.add (file);
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        public FileVisitResult visitFileFailed (Path file, IOException e) {
+          report.addError (file.toFile(), e);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          futures.get (i).get();
+        } catch (ExecutionException e) {
+          // Exceptions are recorded by processFile, but not errors
+          report.addError (submitted.get (i).toFile(), 
+              new IOException (e.getCause().toString(), e.getCause()));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException ("Find and replace interrupted");
+    } finally {
+      executor.shutdownNow();
+    }
+    return report;
+  } // end method run
+
+  private boolean isHidden (Path path) {
+    Path name = path.getFileName();
+    if (name != null && name.toString().startsWith (".")) {
+      return true;
+    }
+    try {
+      return Files.isHidden (path);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+    Count the matches in one file, and rewrite it if there are any.
+   */
+  private void processFile (Path file, Report report) {
+    report.addFileScanned();
+    try {
+      int matches;
+      if (replacer != null) {
+        matches = countLiteral (file);
+        if (matches > 0 && (! dryRun)) {
+          replaceLiteral (file);
+        }
+      } else {
+        String text = newDecoder().decode 
+            (ByteBuffer.wrap (Files.readAllBytes (file))).toString();
+        Matcher matcher = pattern.matcher (text);
+        matches = 0;
+        while (matcher.find()) {
+          matches++;
+        }
+        if (matches > 0 && (! dryRun)) {
+          matcher.reset();
+          writeAtomically (file, matcher.replaceAll (patternReplacement));
+        }
+      }
+      if (matches > 0) {
+        report.addMatches (file.toFile(), matches);
+      }
+    } catch (IOException e) {
+      report.addError (file.toFile(), e);
+    } catch (RuntimeException e) {
+      // Such as a bad group reference in the replacement
+      report.addError (file.toFile(), new IOException (e.toString(), e));
+    }
+  } // end method processFile
+
+  /**
+    Returns a decoder that fails on input not valid in the character set,
+    rather than quietly replacing it.
+   */
+  private CharsetDecoder newDecoder () {
+    return charset.newDecoder()
+        .onMalformedInput (CodingErrorAction.REPORT)
+        .onUnmappableCharacter (CodingErrorAction.REPORT);
+  }
+
+  /**
+    Returns an encoder that fails on characters the character set can't
+    represent, rather than quietly replacing them.
+   */
+  private CharsetEncoder newEncoder () {
+    return charset.newEncoder()
+        .onMalformedInput (CodingErrorAction.REPORT)
+        .onUnmappableCharacter (CodingErrorAction.REPORT);
+  }
+
+  private int countLiteral (Path file)
+      throws IOException {
+    Reader in = new InputStreamReader 
+        (Files.newInputStream (file), newDecoder());
+    try {
+      return replacer.replace (new BufferedReader (in), null);
+    } finally {
+      in.close();
+    }
+  }
+
+  private void replaceLiteral (Path file)
+      throws IOException {
+    Path temp = createTempFile (file);
+    boolean done = false;
+    try {
+      Reader in = new InputStreamReader 
+          (Files.newInputStream (file), newDecoder());
+      try {
+        Writer out = new BufferedWriter (new OutputStreamWriter
+            (Files.newOutputStream (temp), newEncoder()));
+        try {
+          replacer.replace (new BufferedReader (in), out);
+        } finally {
+          out.close();
+        }
+      } finally {
+        in.close();
+      }
+      replaceFile (temp, file);
+      done = true;
+    } finally {
+      if (! done) {
+        Files.deleteIfExists (temp);
+      }
+    }
+  } // end method replaceLiteral
+
+  private void writeAtomically (Path file, String text)
+      throws IOException {
+    Path temp = createTempFile (file);
+    boolean done = false;
+    try {
+      ByteBuffer bytes = newEncoder().encode (CharBuffer.wrap (text));
+      Files.write (temp, Arrays.copyOfRange 
+          (bytes.array(), bytes.arrayOffset() + bytes.position(), 
+           bytes.arrayOffset() + bytes.limit()));
+      replaceFile (temp, file);
+      done = true;
+    } finally {
+      if (! done) {
+        Files.deleteIfExists (temp);
+      }
+    }
+  }
+
+  /**
+    Create a temporary file alongside the passed file, so that it may later
+    be renamed on top of it.
+   */
+  private Path createTempFile (Path file)
+      throws IOException {
+    Path dir = file.toAbsolutePath().getParent();
+    return Files.createTempFile (dir, "." + file.getFileName().toString(), ".tmp");
+  }
+
+  /**
+    Move the temporary file on top of the original, keeping the original's
+    permissions where the file system supports them.
+   */
+  private void replaceFile (Path temp, Path file)
+      throws IOException {
+    try {
+      Files.setPosixFilePermissions
+          (temp, Files.getPosixFilePermissions (file));
+    } catch (UnsupportedOperationException e) {
+      // Not a POSIX file system
+    }
+    try {
+      Files.move (temp, file,
+          StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move (temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+    The results of a find and replace run. In a dry run, the files listed
+    as matched are the ones that would have been changed.
+   */
+  public static class Report {
+
+    private  int                        filesScanned  = 0;
+    private  int                        matchCount    = 0;
+    private  TreeMap<File, Integer>     matches
+        = new TreeMap<File, Integer>();
+    private  TreeMap<File, IOException> errors
+        = new TreeMap<File, IOException>();
+
+    synchronized void addFileScanned () {
+      filesScanned++;
+    }
+
+    synchronized void addMatches (File file, int count) {
+      matches.put (file, count);
+      matchCount = matchCount + count;
+    }
+
+    synchronized void addError (File file, IOException e) {
+      errors.put (file, e);
+    }
+
+    /**
+      Returns the number of files examined.
+     */
+    public synchronized int getFilesScanned () {
+      return filesScanned;
+    }
+
+    /**
+      Returns the number of files containing at least one match.
+     */
+    public synchronized int getFilesMatched () {
+      return matches.size();
+    }
+
+    /**
+      Returns the total number of matches found in all files.
+     */
+    public synchronized int getMatchCount () {
+      return matchCount;
+    }
+
+    /**
+      Returns the number of matches found in each file containing any,
+      sorted by file.
+     */
+    public synchronized SortedMap<File, Integer> getMatches () {
+      return new TreeMap<File, Integer> (matches);
+    }
+
+    /**
+      Returns the files that could not be processed, along with the reason.
+     */
+    public synchronized SortedMap<File, IOException> getErrors () {
+      return new TreeMap<File, IOException> (errors);
+    }
+
+  } // end inner class Report
+
+} // end class XFindReplace
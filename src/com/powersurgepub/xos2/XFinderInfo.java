@@ -0,0 +1,185 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+
+/**
+  Reads and writes the file type and creator held in a Mac file's Finder 
+  information, the 32 byte com.apple.FinderInfo extended attribute, whose 
+  first four bytes are the file type and next four the creator. Java's own
+  extended attribute support can't reach the attribute, since it adds a 
+  "user." prefix to every name, so the work is done by the xattr command
+  that comes with Mac OS. The rest of the Finder information (flags, label
+  and so on) is kept as it was. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+class XFinderInfo {
+
+  /** The name of the extended attribute. */
+  static final String           ATTRIBUTE           = "com.apple.FinderInfo";
+
+  /** The command used to read and write the attribute. */
+  static final String           XATTR               = "/usr/bin/xattr";
+
+  /** The length of the Finder information, in bytes. */
+  static final int              LENGTH              = 32;
+
+  /** Offset of the file type within the Finder information. */
+  static final int              TYPE_OFFSET         = 0;
+
+  /** Offset of the file creator within the Finder information. */
+  static final int              CREATOR_OFFSET      = 4;
+
+  /** How long to wait for the xattr command, in seconds. */
+  private static final long     TIMEOUT_SECONDS     = 10;
+
+  private XFinderInfo () {
+  }
+
+  /**
+    Store a four character code in a file's Finder information, unless it
+    is already there.
+
+    @return True if the code was stored, or already there; false if there 
+            were any problems.
+    @param  file   The file to be tagged.
+    @param  offset TYPE_OFFSET or CREATOR_OFFSET.
+    @param  code   A standard Mac OS file type or creator.
+   */
+  static boolean setCode (File file, int offset, int code) {
+    if (! file.exists()) {
+      return false;
+    }
+    byte[] info = read (file);
+    if (info == null) {
+      info = new byte [LENGTH];
+    }
+    byte[] bytes = codeBytes (code);
+    boolean same = true;
+    for (int i = 0; i < bytes.length; i++) {
+      if (info [offset + i] != bytes [i]) {
+        same = false;
+        info [offset + i] = bytes [i];
+      }
+    }
+    if (same) {
+      return true;
+    }
+    StringBuilder hex = new StringBuilder();
+    for (byte b : info) {
+      hex.append (String.format ("%02X", b & 0xff));
+    }
+    return (run (null, "-wx", ATTRIBUTE, hex.toString(), 
+        file.getAbsolutePath()) == 0);
+  } // end method setCode
+
+  /**
+    Returns the four bytes of a code, most significant first.
+   */
+  private static byte[] codeBytes (int code) {
+    byte[] bytes = new byte [4];
+    for (int i = 0; i < 4; i++) {
+      bytes [i] = (byte)(code >>> (24 - (8 * i)));
+    }
+    return bytes;
+  }
+
+  /**
+    Read a file's Finder information.
+
+    @return The Finder information, or null if the file has none, or it 
+            couldn't be read.
+   */
+  private static byte[] read (File file) {
+    StringBuilder output = new StringBuilder();
+    if (run (output, "-px", ATTRIBUTE, file.getAbsolutePath()) != 0) {
+      return null;
+    }
+    // The attribute is listed as hex digits, in groups separated by spaces
+    // and line breaks
+    String hex = output.toString().replaceAll ("\\s", "");
+    if (hex.length() != LENGTH * 2) {
+      return null;
+    }
+    byte[] info = new byte [LENGTH];
+    try {
+      for (int i = 0; i < LENGTH; i++) {
+        info [i] = (byte) Integer.parseInt 
+            (hex.substring (i * 2, (i * 2) + 2), 16);
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    return info;
+  }
+
+  /**
+    Run the xattr command.
+
+    @return The command's exit status, or -1 if it could not be run, or 
+            did not finish in time.
+    @param  output Where the command's output is to be placed, or null if 
+                   it isn't wanted.
+    @param  args   The arguments to the command.
+   */
+  private static int run (StringBuilder output, String... args) {
+    List<String> command = new ArrayList<String>();
+    command.add (XATTR);
+    command.addAll (Arrays.asList (args));
+    ProcessBuilder builder = new ProcessBuilder (command);
+    builder.redirectError (ProcessBuilder.Redirect.DISCARD);
+    Process process;
+    try {
+      process = builder.start();
+    } catch (IOException e) {
+      return -1;
+    }
+    try {
+      BufferedReader reader = new BufferedReader 
+          (new InputStreamReader (process.getInputStream(), "US-ASCII"));
+      try {
+        String line = reader.readLine();
+        while (line != null) {
+          if (output != null) {
+            output.append (line);
+            output.append (' ');
+          }
+          line = reader.readLine();
+        }
+      } finally {
+        reader.close();
+      }
+      if (! process.waitFor (TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        process.destroyForcibly();
+        return -1;
+      }
+      return process.exitValue();
+    } catch (IOException e) {
+      process.destroyForcibly();
+      return -1;
+    } catch (InterruptedException e) {
+      process.destroyForcibly();
+      Thread.currentThread().interrupt();
+      return -1;
+    }
+  } // end method run
+
+} // end class XFinderInfo
@@ -18,6 +18,7 @@ package com.powersurgepub.xos2;
 
   import java.io.*;
   import java.net.*;
+  import java.util.*;
   
 /**
    A standard interface for a user interfacing program designed to
@@ -47,6 +48,35 @@ public interface XHandler {
    */
   public void handleOpenFile (File inFile);
 
+  /**
+    Standard way to respond to a number of documents being passed to this
+    application at once. XOS calls this with the documents split into 
+    chunks, one chunk after another, each on the thread chosen by the 
+    OPEN_FILE policy of its XCallbackExecutor: by default each chunk is
+    an event of its own on the event dispatch thread; see XBatch. Unless
+    overridden, handleOpenFile is called for each document in turn.
+
+    @param inFiles Files to be processed by this application.
+   */
+  public default void handleOpenFiles (List<File> inFiles) {
+    for (File inFile : inFiles) {
+      handleOpenFile (inFile);
+    }
+  }
+
+  /**
+    May handleOpenFiles be called on several background threads at once?
+    A handler that overrides handleOpenFiles, and is safe to call that way,
+    can return true to have chunks opened in parallel, on a bounded pool 
+    of background threads, whatever the OPEN_FILE policy.
+
+    @return True if handleOpenFiles is thread-safe; false (the default)
+            to have chunks run according to the OPEN_FILE policy.
+   */
+  public default boolean isOpenFilesThreadSafe () {
+    return false;
+  }
+
   /**
    Standard way to respond to a URI being passed to this application on a Mac.
 
@@ -73,10 +103,35 @@ public interface XHandler {
    */
   public void handlePrintFile (File inFile);
 
+  /**
+    Standard way to respond to a request to print several files at once.
+    Unless overridden, handlePrintFile is called for each file in turn.
+
+    @param inFiles Files to be printed by this application, in order.
+   */
+  public default void handlePrintFiles (List<File> inFiles) {
+    for (File inFile : inFiles) {
+      handlePrintFile (inFile);
+    }
+  }
+
   /**
      Standard way to respond to a Quit Menu Item on a Mac.
    */
   public void handleQuit();
+
+  /**
+    Standard way to respond to a request from the platform to quit, which
+    must eventually be answered. Unless overridden, handleQuit is called, 
+    and if it returns, rather than exiting, the quit is cancelled.
+
+    @param response The platform's request for an answer.
+   */
+  public default void handleQuitRequest (XQuitResponse response) {
+    handleQuit();
+    // Still running, so the quit must have been declined
+    response.cancelQuit();
+  }
     
 }
 
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.util.*;
+
+/**
+  An immutable line separator: the platform it is typical of, its
+  characters, and those characters already encoded in the common
+  character sets. There is exactly one instance for each platform, so
+  that a writer can take the separator once, when it opens a file, and
+  then write it after every line without any further lookups or 
+  encoding. <p>
+
+  Following is typical code that would be used to access XLineSeparator. <p>
+
+  <pre><code>
+    XLineSeparator lineSep = XOS.getShared().getLineSeparator();
+    ...
+    out.write (line.getBytes (StandardCharsets.UTF_8));
+    lineSep.writeTo (out, StandardCharsets.UTF_8);
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public final class XLineSeparator {
+
+  /** Carriage return, typical of a traditional Mac. */
+  public  static final XLineSeparator MAC 
+      = new XLineSeparator (XOS.LINE_SEP_PLATFORM_MAC, XOS.LINE_SEP_STRING_MAC);
+
+  /** Line feed, typical of Unix. */
+  public  static final XLineSeparator UNIX 
+      = new XLineSeparator (XOS.LINE_SEP_PLATFORM_UNIX, XOS.LINE_SEP_STRING_UNIX);
+
+  /** Carriage return and line feed, typical of DOS and Windows. */
+  public  static final XLineSeparator DOS 
+      = new XLineSeparator (XOS.LINE_SEP_PLATFORM_DOS, XOS.LINE_SEP_STRING_DOS);
+
+  private final String      platform;
+  private final String      lineSep;
+
+  /** Encoded in US-ASCII, and so also in UTF-8, ISO-8859-1 and the like. */
+  private final byte[]      ascii;
+  private final byte[]      utf16BE;
+  private final byte[]      utf16LE;
+
+  private XLineSeparator (String platform, String lineSep) {
+    this.platform = platform;
+    this.lineSep = lineSep;
+    ascii = lineSep.getBytes (StandardCharsets.US_ASCII);
+    utf16BE = lineSep.getBytes (StandardCharsets.UTF_16BE);
+    utf16LE = lineSep.getBytes (StandardCharsets.UTF_16LE);
+  }
+
+  /**
+    Returns the line separator for a platform.
+
+    @return The line separator. Unix line separators are returned if the 
+            platform is not recognized.
+    @param  platform XOS.LINE_SEP_PLATFORM_MAC, LINE_SEP_PLATFORM_UNIX or
+                     LINE_SEP_PLATFORM_DOS.
+   */
+  public static XLineSeparator forPlatform (String platform) {
+    if (platform.equals (XOS.LINE_SEP_PLATFORM_MAC)) {
+      return MAC;
+    }
+    else
+    if (platform.equals (XOS.LINE_SEP_PLATFORM_DOS)) {
+      return DOS;
+    } else {
+      return UNIX;
+    }
+  }
+
+  /**
+    Returns the platform for which this line separator is typical.
+
+    @return XOS.LINE_SEP_PLATFORM_MAC, LINE_SEP_PLATFORM_UNIX or
+            LINE_SEP_PLATFORM_DOS.
+   */
+  public String getPlatform () {
+    return platform;
+  }
+
+  /**
+    Returns the characters of the line separator.
+
+    @return The line separator.
+   */
+  public String getLineSep () {
+    return lineSep;
+  }
+
+  /**
+    Returns the length of the line separator, in characters.
+
+    @return The number of characters.
+   */
+  public int length () {
+    return lineSep.length();
+  }
+
+  /**
+    Returns the line separator encoded in a character set.
+
+    @return A new array holding the encoded line separator.
+    @param  charset The character set to be used.
+   */
+  public byte[] getBytes (Charset charset) {
+    return encoded (charset).clone();
+  }
+
+  /**
+    Write the line separator, encoded in a character set, to a stream.
+
+    @param out     The stream to be written to.
+    @param charset The character set to be used.
+    @throws IOException If the stream cannot be written.
+   */
+  public void writeTo (OutputStream out, Charset charset)
+      throws IOException {
+    out.write (encoded (charset));
+  }
+
+  /**
+    Write the line separator to a writer.
+
+    @param out     The writer to be written to.
+    @throws IOException If the writer cannot be written.
+   */
+  public void writeTo (Writer out)
+      throws IOException {
+    out.write (lineSep, 0, lineSep.length());
+  }
+
+  private byte[] encoded (Charset charset) {
+    if (charset.equals (StandardCharsets.UTF_8)
+        || charset.equals (StandardCharsets.US_ASCII)
+        || charset.equals (StandardCharsets.ISO_8859_1)) {
+      return ascii;
+    }
+    if (charset.equals (StandardCharsets.UTF_16BE)
+        || charset.equals (StandardCharsets.UTF_16)) {
+      // UTF-16 is written big-endian, after a byte order mark that 
+      // belongs only at the start of the file
+      return utf16BE;
+    }
+    if (charset.equals (StandardCharsets.UTF_16LE)) {
+      return utf16LE;
+    }
+    // Other character sets may also start each encoding with a byte order
+    // mark: encoding the separator twice shows how long the mark is, so 
+    // that it can be left off
+    byte[] once = lineSep.getBytes (charset);
+    byte[] twice = (lineSep + lineSep).getBytes (charset);
+    int mark = (2 * once.length) - twice.length;
+    if (mark <= 0) {
+      return once;
+    }
+    return Arrays.copyOfRange (once, mark, once.length);
+  }
+
+  public String toString () {
+    return lineSep;
+  }
+
+} // end class XLineSeparator
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.*;
+  import java.nio.charset.*;
+  import java.nio.file.*;
+  import java.nio.file.attribute.*;
+
+/**
+  A platform provider for Linux. Linux desktops don't deliver About,
+  Preferences, Open, Print or Quit events to Java applications, so nothing
+  is installed, and no AWT classes are ever loaded by this provider. Programs
+  receive the equivalent events from their own menus and windows, as
+  arranged by XOS.setFileMenu, setHelpMenu and setMainWindow. <p>
+
+  Linux has no file types or creators, so these are recorded as the user
+  extended attributes xos2.type and xos2.creator, each holding the four
+  characters of the Mac OS code, on file systems that support user 
+  extended attributes. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XLinuxProvider 
+    implements XPlatformProvider {
+
+  /** The extended attribute holding a file's type. */
+  public  static final String   TYPE_ATTRIBUTE      = "xos2.type";
+
+  /** The extended attribute holding a file's creator. */
+  public  static final String   CREATOR_ATTRIBUTE   = "xos2.creator";
+
+  public XLinuxProvider () {
+
+  }
+
+  public String getName () {
+    return "linux";
+  }
+
+  public int getPriority () {
+    return 200;
+  }
+
+  public boolean isSupported (String osName, boolean headless) {
+    return (osName != null && osName.startsWith ("Linux"));
+  }
+
+  public void install (XOS xos) {
+    // Nothing to install
+  }
+
+  public boolean setFileType (File file, int type) {
+    return setCode (file, TYPE_ATTRIBUTE, type);
+  }
+
+  public boolean setFileCreator (File file, int creator) {
+    return setCode (file, CREATOR_ATTRIBUTE, creator);
+  }
+
+  /**
+    Returns the file type recorded for a file.
+
+    @return The four characters of the file type, or null if none has been
+            recorded.
+    @param  file The file of interest.
+   */
+  public String getFileType (File file) {
+    return getCode (file, TYPE_ATTRIBUTE);
+  }
+
+  /**
+    Returns the file creator recorded for a file.
+
+    @return The four characters of the file creator, or null if none has 
+            been recorded.
+    @param  file The file of interest.
+   */
+  public String getFileCreator (File file) {
+    return getCode (file, CREATOR_ATTRIBUTE);
+  }
+
+  /**
+    Record a four character code in an extended attribute, unless the
+    attribute already holds it.
+   */
+  private boolean setCode (File file, String name, int code) {
+    UserDefinedFileAttributeView view = getView (file);
+    if (view == null) {
+      return false;
+    }
+    ByteBuffer value = ByteBuffer.allocate (4).putInt (code);
+    value.flip();
+    try {
+      if (value.equals (read (view, name))) {
+        return true;
+      }
+      view.write (name, value);
+      return true;
+    } catch (IOException e) {
+      return false;
+    } catch (SecurityException e) {
+      return false;
+    }
+  }
+
+  private String getCode (File file, String name) {
+    UserDefinedFileAttributeView view = getView (file);
+    if (view == null) {
+      return null;
+    }
+    try {
+      ByteBuffer value = read (view, name);
+      if (value == null) {
+        return null;
+      }
+      return StandardCharsets.ISO_8859_1.decode (value).toString();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static UserDefinedFileAttributeView getView (File file) {
+    return Files.getFileAttributeView 
+        (file.toPath(), UserDefinedFileAttributeView.class);
+  }
+
+  /**
+    Read an extended attribute, returning null if it isn't there.
+   */
+  private static ByteBuffer read (UserDefinedFileAttributeView view, 
+      String name) 
+        throws IOException {
+    if (! view.list().contains (name)) {
+      return null;
+    }
+    ByteBuffer value = ByteBuffer.allocate (view.size (name));
+    view.read (name, value);
+    value.flip();
+    return value;
+  }
+
+} // end class XLinuxProvider
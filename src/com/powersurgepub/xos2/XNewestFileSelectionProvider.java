@@ -0,0 +1,115 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.file.*;
+  import java.nio.file.attribute.*;
+
+/**
+  Answers each request to open a file with the most recently modified 
+  file whose name matches a glob pattern, such as "*.csv", for batch jobs
+  that are to pick up whatever arrived last. The directory searched is the
+  one given to the provider, or else the dialog's starting directory; only 
+  the directory's own entries are considered, and only those of a kind the
+  request allows. If nothing matches, the request is treated as cancelled.
+  A request to save a file is answered with the file suggested by the 
+  program, if any, without regard to the pattern. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XNewestFileSelectionProvider 
+    implements XSelectionProvider {
+
+  private final String      glob;
+  private final File        directory;
+
+  /**
+    Creates a provider searching each dialog's starting directory.
+
+    @param glob The pattern that names must match, in the syntax of
+                FileSystem.getPathMatcher, without the "glob:" prefix.
+   */
+  public XNewestFileSelectionProvider (String glob) {
+    this (glob, null);
+  }
+
+  /**
+    Creates a provider searching a particular directory.
+
+    @param glob      The pattern that names must match, in the syntax of
+                     FileSystem.getPathMatcher, without the "glob:" prefix.
+    @param directory The directory to be searched, or null for each 
+                     dialog's starting directory.
+   */
+  public XNewestFileSelectionProvider (String glob, File directory) {
+    this.glob = glob;
+    this.directory = directory;
+  }
+
+  /**
+    Choose the newest matching file.
+
+    @return The newest matching file, or null if there is none.
+    @param  request What the program asked for.
+   */
+  public File select (XSelectionRequest request) {
+    if (request.isSave()) {
+      File suggested = request.getSuggestedFile();
+      return (suggested == null ? null : request.resolve (suggested));
+    }
+    File dir = (directory != null ? directory : request.getCurrentDirectory());
+    if (dir == null) {
+      return null;
+    }
+    PathMatcher matcher 
+        = FileSystems.getDefault().getPathMatcher ("glob:" + glob);
+    Path newest = null;
+    FileTime newestTime = null;
+    try {
+      DirectoryStream<Path> entries = Files.newDirectoryStream (dir.toPath());
+      try {
+        for (Path entry : entries) {
+          if (! matcher.matches (entry.getFileName())) {
+            continue;
+          }
+          BasicFileAttributes attributes;
+          try {
+            attributes = Files.readAttributes 
+                (entry, BasicFileAttributes.class);
+          } catch (IOException e) {
+            // Gone already, perhaps
+            continue;
+          }
+          boolean allowed = (attributes.isDirectory() 
+              ? request.isDirectoryAllowed() : request.isFileAllowed());
+          if (allowed && (newestTime == null 
+              || attributes.lastModifiedTime().compareTo (newestTime) > 0)) {
+            newest = entry;
+            newestTime = attributes.lastModifiedTime();
+          }
+        }
+      } finally {
+        entries.close();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    return (newest == null ? null : newest.toFile());
+  } // end method select
+
+} // end class XNewestFileSelectionProvider
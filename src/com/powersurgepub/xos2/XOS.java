@@ -16,14 +16,13 @@
 
 package com.powersurgepub.xos2;
 
-  // import com.apple.mrj.*;
-	import com.apple.eawt.*;
-  import com.apple.eio.*;
   import java.awt.*;
   import java.awt.event.*;
   import java.io.*;
-  import java.lang.reflect.*;
   import java.net.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import java.util.function.Supplier;
   import java.util.prefs.*;
   import javax.swing.*;
 
@@ -68,6 +67,13 @@ package com.powersurgepub.xos2;
     }
    </code></pre>
    
+  A program with no user interface, such as a batch converter running on 
+  a server, may use XOS, XTextFile, the preference methods and the string 
+  utilities without any AWT or Swing classes being loaded, provided that it
+  runs headless (with java.awt.headless set to true, or on a Linux or Unix 
+  system without a display) and doesn't call the methods that take windows 
+  or menus. <p>
+   
    Version History: <ul><li>
       2004/08/07 - Originally written. 
     </ul>
@@ -90,6 +96,11 @@ public class XOS
   
   public  final static String   OS_NAME                 = "os.name";
   
+  /**
+   System property used to run Java without a display.
+   */
+  public  final static String   HEADLESS                = "java.awt.headless";
+  
   /** 
    Key used to set system properties to display program name under Mac OS. 
    */
@@ -214,58 +225,172 @@ public class XOS
    */
   public  final static String   LINE_SEP_STRING_DOS     = "\r\n";
   
-  private       static XOS      xos                     = null;
- 
-  private String              domainLevel1 = "";
-  private String              domainLevel2 = "com";
-  private String              programName = "";  
-  private String              programNameLower = "";
-  private String              programNameNoSpace = "";
+  /** The Mac OS file type for a text file ("TEXT"). */
+  public  final static int      FILE_TYPE_TEXT          = 1413830740;
+  
+  /** The Mac OS file creator given to text files ("CCON"). */
+  public  final static int      FILE_CREATOR_TEXT       = 1128484686;
+  
+  /** The name of the context returned by getShared. */
+  public  final static String   DEFAULT_CONTEXT         = "default";
+  
+  /** 
+    Holds the default context, which will be created, exactly once, the 
+    first time it's requested. The JVM guarantees that the class is 
+    initialized safely, even when first referenced from several threads at
+    once, and thereafter the instance can be read without any locking.
+   */
+  private static class SharedHolder {
+    static final XOS SHARED = new XOS();
+  }
+  
+  /** A value for a user preference key that has no value. */
+  private       static final String NO_PREF             = new String ("");
   
-  private XHandler            xHandler;
+  /** Named contexts, other than the default. */
+  private final static ConcurrentHashMap<String, XOS> contexts
+      = new ConcurrentHashMap<String, XOS>();
   
-  private Preferences         userRoot;
-  private Preferences         userPreferences           = null;;
-  private Preferences         systemRoot;
-  private Preferences         systemPreferences         = null;
+  /** Converts a program name to lower-case, with no spaces. */
+  private final static XCaseConverter NO_SPACE         = new XCaseConverter
+      ("", XCaseConverter.LOWER, XCaseConverter.LOWER, XCaseConverter.LOWER);
+ 
+  private final String        contextName;
+  
+  /*
+    Fields that may change after construction are volatile, so that they
+    may be safely read from any thread without locking.
+   */
+  private volatile String     domainLevel1 = "";
+  private volatile String     domainLevel2 = "com";
+  private volatile String     programName = "";  
+  private volatile String     programNameLower = "";
+  private volatile String     programNameNoSpace = "";
+  
+  private volatile XHandler   xHandler;
+  private volatile XSingleInstance singleInstance       = null;
+  private XOpenFilesDispatcher openFilesDispatcher        = null;
+  private final XEventMetrics eventMetrics              = new XEventMetrics();
+  private final XCallbackExecutor callbackExecutor    
+      = new XCallbackExecutor (eventMetrics);
+  private XURIDispatcher      uriDispatcher             = null;
+  private XShutdownCoordinator shutdownCoordinator      = null;
+  private volatile XPrintPipeline printPipeline         = null;
+  private volatile boolean    initializeCalled          = false;
+  private volatile boolean    prewarmFileChooser        = false;
+  private final CopyOnWriteArrayList<XBatchListener> batchListeners
+      = new CopyOnWriteArrayList<XBatchListener>();
+  
+  private volatile Preferences userRoot;
+  private volatile Preferences userPreferences          = null;
+  private volatile Preferences systemRoot;
+  private volatile Preferences systemPreferences        = null;
+  
+  /** 
+    User preference values already read, so that they may be read again 
+    without locking the preferences node. Keys with no value are mapped 
+    to NO_PREF. 
+   */
+  private final ConcurrentHashMap<String, String> prefCache
+      = new ConcurrentHashMap<String, String>();
   
   private String              mrjVersion                = "";
   private String              osName                    = "";
   private boolean             runningOnMacOS            = false;
   private String              sysLineSep                = null;
   private String              sysLineSepPlatform        = "";
-  private String              prefLineSep               = null;
-  private String              prefLineSepPlatform       = "";
-  private String              userDirString             = "";
+  private volatile XLineSeparator lineSeparator         = XLineSeparator.UNIX;
+  private volatile String     userDirString             = "";
   
-  private String              menuloc                   = MENU_AT_TOP_OF_WINDOW;
+  private volatile String     menuloc                   = MENU_AT_TOP_OF_WINDOW;
   
-  private boolean             unsavedChanges            = false;
+  private volatile boolean    unsavedChanges            = false;
 
-  private boolean             preferencesAvailable      = false;
+  private volatile boolean    preferencesAvailable      = false;
 
-  private JFrame              mainWindow                = null;
+  private volatile JFrame     mainWindow                = null;
   private JMenuItem           helpMenuItem              = null;
   private JMenu               fileMenu                  = null;
   private JMenuItem           fileExitMenuItem          = null;
   private JMenu               helpMenu                  = null;
   private JMenuItem           helpAboutMenuItem         = null;
   
-  private Application         macApp;
+  /** The platform provider, once found, or null if there is none. */
+  private static XPlatformProvider platformProvider     = null;
+  private static boolean      platformProviderLoaded    = false;
+  private static XFileTagger  fileTagger                = null;
+  private static XContentSniffer contentSniffer        = null;
+  
+  /** Have platform events been connected to this context? */
+  private volatile boolean    platformInstalled         = false;
+  
+  private CompletableFuture<Void> startupFuture       
+      = new CompletableFuture<Void>();
+  
+  private XStartupTimer       startupTimer              = new XStartupTimer();
   
   /** 
     Returns a single instance of XOS that can be shared by many classes. This
-    is the only way to obtain an instance of XOS, since the constructor is
-    protected.
+    is the default context, and is the one that will receive events from 
+    the operating system (About, Preferences, Open, Print and Quit requests).
+    Along with getContext, this is the only way to obtain an instance of 
+    XOS, since the constructors are protected.
    
     @return A single, shared instance of XOS.
    */  
   public static XOS getShared() {
-
-    if (xos == null) {
-      xos = new XOS();
+    return SharedHolder.SHARED;
+  }
+  
+  /**
+    Returns the XOS context with the given name, creating it if it does not
+    yet exist. Each context has its own program name, and so its own 
+    preferences path and preferences, including its own line separator 
+    preference, as well as its own XHandler and main window. This allows 
+    several tools to share one JVM. Only the default context (the one 
+    returned by getShared) receives events from the operating system; other
+    contexts receive events from their own windows and menus. <p>
+   
+    This method may be safely called from any thread. 
+   
+    @return The context with the given name.
+    @param  contextName The name identifying the context. Passing 
+                        DEFAULT_CONTEXT returns the shared instance.
+   */
+  public static XOS getContext (String contextName) {
+    if (contextName.equals (DEFAULT_CONTEXT)) {
+      return getShared();
+    }
+    XOS context = contexts.get (contextName);
+    if (context == null) {
+      XOS created = new XOS (contextName);
+      context = contexts.putIfAbsent (contextName, created);
+      if (context == null) {
+        context = created;
+      }
     }
-    return xos;
+    return context;
+  }
+  
+  /**
+    Returns the names of all contexts created by getContext, not including
+    the default context.
+   
+    @return The names of all named contexts, in alphabetical order.
+   */
+  public static SortedSet<String> getContextNames () {
+    return new TreeSet<String> (contexts.keySet());
+  }
+  
+  /**
+    Forget a named context, so that the next request for a context with 
+    this name will create a new one. The default context cannot be removed.
+   
+    @return The context removed, or null if there was no such context.
+    @param  contextName The name of the context to be removed.
+   */
+  public static XOS removeContext (String contextName) {
+    return contexts.remove (contextName);
   }
   
   /** 
@@ -273,12 +398,23 @@ public class XOS
     directly, but instead invoked indirectly via a call to method getShared.
    */
   protected XOS () {
+    this (DEFAULT_CONTEXT);
+  }
+  
+  /** 
+    Creates a new named context. The constructor should not be called 
+    directly, but instead invoked indirectly via a call to method getContext.
+   
+    @param contextName The name identifying this context.
+   */
+  protected XOS (String contextName) {
     
+    this.contextName = contextName;
+    XStartupTimer.Phase detection = startupTimer.begin (XStartup.OS_DETECTION);
     osName = System.getProperty(OS_NAME);
     if (osName != null
         && osName.equalsIgnoreCase("Mac OS X")) {
       runningOnMacOS = true;
-      macApp = Application.getApplication();
     /* }
     mrjVersion = System.getProperty (MRJ_VERSION);
     if (mrjVersion != null) {
@@ -292,11 +428,30 @@ public class XOS
     // Set system default line separator characters
     sysLineSep = System.getProperty (LINE_SEP);
     sysLineSepPlatform = getLineSepPlatform (sysLineSep);
-    prefLineSep = sysLineSep;
-    prefLineSepPlatform = sysLineSepPlatform;
+    lineSeparator = XLineSeparator.forPlatform (sysLineSepPlatform);
+    startupTimer.end (detection);
     
   } // end constructor
   
+  /**
+    Returns the name of this context.
+   
+    @return The name passed to getContext, or DEFAULT_CONTEXT for the 
+            shared instance.
+   */
+  public String getContextName () {
+    return contextName;
+  }
+  
+  /**
+    Is this the default context, returned by getShared?
+   
+    @return True if this is the default context.
+   */
+  public boolean isDefaultContext () {
+    return contextName.equals (DEFAULT_CONTEXT);
+  }
+  
   /**
     Sets the first level domain name. This will be used as part of the 
     identification of user preferences. 
@@ -329,53 +484,225 @@ public class XOS
     
     this.programName = programName.trim();
     programNameLower = this.programName.toLowerCase();
-    programNameNoSpace = wordDemarcation
-        (programNameLower, "", -1, -1, -1);
+    programNameNoSpace = NO_SPACE.convert (programNameLower);
   } // end constructor
   
   /**
     Do startup tasks that should not be performed until after key 
     fields (domain name, program name) have been supplied. User preferences
     will be retrieved, and look and feel and menu locations will be set
-    based on any established preferences.
+    based on any established preferences. <p>
+   
+    Independent phases run in parallel on background threads, and this 
+    method returns as soon as everything needed to show the first window
+    is in place. Work that the first window does not need, such as loading
+    the font system and updating the Info.plist file, may continue after
+    this method returns; use getStartupFuture or whenStarted to find out
+    when it is done.
    */
   public void initialize () {
     
+    XStartupTimer.Phase initializing = startupTimer.begin (XStartup.INITIALIZE);
+    initializeCalled = true;
+    XStartup startup = new XStartup (startupTimer);
+    
     // Get nodes for Preferences
-    userRoot = Preferences.userRoot();
-    systemRoot = Preferences.systemRoot();
-    userPreferences = userRoot.node (getPreferencesPath());
-    systemPreferences = systemRoot.node (getPreferencesPath());
+    CompletableFuture<Void> prefs = startup.runPhase 
+        (XStartup.PREFS, new Runnable() {
+      public void run() {
+        userRoot = Preferences.userRoot();
+        systemRoot = Preferences.systemRoot();
+        Preferences prefsNode = userRoot.node (getPreferencesPath());
+        prefCache.clear();
+        prefsNode.addPreferenceChangeListener (new PreferenceChangeListener() {
+          public void preferenceChange (PreferenceChangeEvent evt) {
+            String newValue = evt.getNewValue();
+            prefCache.put (evt.getKey(), newValue == null ? NO_PREF : newValue);
+            if (evt.getKey().equals (LINE_SEP_KEY)) {
+              refreshLineSeparator();
+            }
+          }
+        });
+        userPreferences = prefsNode;
+        systemPreferences = systemRoot.node (getPreferencesPath());
+      }
+    });
     userDirString = System.getProperty (USER_DIR);
     
+    // Load the user's preferred look and feel, without yet installing it, 
+    // and warm up the font system, which the first window will need to 
+    // lay out. Neither is wanted when there will be no windows. 
+    CompletableFuture<LookAndFeel> lookAndFeel 
+        = CompletableFuture.completedFuture (null);
+    CompletableFuture<Void> fonts = CompletableFuture.completedFuture (null);
+    if (! isHeadless()) {
+      lookAndFeel = startup.supplyPhase 
+          (XStartup.LOOK_AND_FEEL_PRELOAD, prefs, new Supplier<LookAndFeel>() {
+        public LookAndFeel get() {
+          return loadLookAndFeel();
+        }
+      });
+      fonts = startup.runPhase (XStartup.FONT_PRELOAD, new Runnable() {
+        public void run() {
+          XSwingSupport.preloadFonts();
+        }
+      });
+    }
+    
+    XStartup.await (prefs);
+    
+    CompletableFuture<Void> infoPlist = CompletableFuture.completedFuture (null);
     if (runningOnMacOS) {
-      System.setProperty (ABOUT_NAME, programName);
-      System.setProperty (USE_FILE_DIALOG_PACKAGES, TRUE);
-      if (getBrushedMetal()) {
-        System.setProperty (BRUSHED_METAL, TRUE);
-      }
-      menuloc = getPref (MENU_LOCATION_KEY, MENU_AT_TOP_OF_SCREEN);
-      setMenuAtTopOfScreen (menuloc.equalsIgnoreCase (MENU_AT_TOP_OF_SCREEN));
+      startup.runInline (XStartup.MAC_PROPERTIES, new Runnable() {
+        public void run() {
+          System.setProperty (ABOUT_NAME, programName);
+          System.setProperty (USE_FILE_DIALOG_PACKAGES, TRUE);
+          if (getBrushedMetal()) {
+            System.setProperty (BRUSHED_METAL, TRUE);
+          }
+          menuloc = getPref (MENU_LOCATION_KEY, MENU_AT_TOP_OF_SCREEN);
+          applyMenuAtTopOfScreen 
+              (menuloc.equalsIgnoreCase (MENU_AT_TOP_OF_SCREEN));
+        }
+      });
+      final boolean menuAtTop = menuloc.equalsIgnoreCase (MENU_AT_TOP_OF_SCREEN);
+      infoPlist = startup.runPhase (XStartup.INFO_PLIST, new Runnable() {
+        public void run() {
+          modifyInfoPlist (USE_SCREEN_MENU_BAR_2, menuAtTop);
+        }
+      });
     } // end if running on a Mac
     
-    // Set Look and Feel if user has expressed a preference
+    // Install the look and feel before any windows are created
+    final LookAndFeel preloaded = XStartup.await (lookAndFeel);
+    if (preloaded != null) {
+      startup.runInline (XStartup.LOOK_AND_FEEL_INSTALL, new Runnable() {
+        public void run() {
+          try {
+            UIManager.setLookAndFeel (preloaded);
+          } catch (Exception e) {
+            // System.out.println ("Exception caught trying to set look and feel");
+          } // end catch exception
+        }
+      });
+    }
+    
+    // See if user has expressed a preference that would override
+    // the system default for line separators
+    startup.runInline (XStartup.LINE_SEPARATOR, new Runnable() {
+      public void run() {
+        refreshLineSeparator();
+      }
+    });
+    
+    CompletableFuture<Void> started = startup.finish (fonts, infoPlist);
+    
+    // Once everything else is done, build a file chooser, using the 
+    // installed look and feel, so that the first one the user sees will 
+    // appear at once
+    if (prewarmFileChooser 
+        && (! isHeadless()) 
+        && XFileChooser.prefersSwingChooser (this)) {
+      final CompletableFuture<JFileChooser> fileChooser 
+          = new CompletableFuture<JFileChooser>();
+      XFileChooser.offerPrewarmed (fileChooser);
+      started.thenRun (new Runnable() {
+        public void run() {
+          XFileChooser.prewarmWhenIdle (XOS.this, fileChooser);
+        }
+      });
+    }
+    
+    started.thenRun (new Runnable() {
+      public void run() {
+        startupFuture.complete (null);
+      }
+    });
+    startupTimer.end (initializing);
+    
+  } // end method
+  
+  /**
+    Load and instantiate the look and feel preferred by the user, if one 
+    has been specified. 
+   
+    @return The preferred look and feel, or null if there is none, or if it
+            could not be loaded.
+   */
+  private LookAndFeel loadLookAndFeel () {
     String lookAndFeelClassName = getLookAndFeelClassName();
     if ((! lookAndFeelClassName.equals ("null"))
         // Nimbus l&f sometimes causes null pointer exception 
         && (! lookAndFeelClassName.contains("Nimbus"))) {
       try {
-        javax.swing.UIManager.setLookAndFeel (lookAndFeelClassName);
+        return (LookAndFeel)Class.forName (lookAndFeelClassName)
+            .getDeclaredConstructor().newInstance();
       } catch (Exception e) {
-        // System.out.println ("Exception caught trying to set look and feel");
+        // System.out.println ("Exception caught trying to load look and feel");
       } // end catch exception
     } // end if user has specified a preferred look and feel
-    
-    // See if user has expressed a preference that would override
-    // the system default for line separators
-    getLineSepPlatform();
-    
-  } // end method
+    return null;
+  }
+  
+  /**
+    Ask initialize to have a Swing file chooser built in advance, so that
+    the first XFileChooser dialog appears at once. Once the rest of the
+    startup work is finished, the chooser is built on the event dispatch
+    thread, as Swing requires, at a moment when no other events are 
+    waiting. This is only worth doing for programs that are
+    likely to show a file chooser soon after starting. It has no effect 
+    when running headless, or when the user prefers the native Mac chooser.
+    Must be called before initialize.
+   
+    @param prewarmFileChooser True to build a file chooser in advance.
+   */
+  public void setPrewarmFileChooser (boolean prewarmFileChooser) {
+    this.prewarmFileChooser = prewarmFileChooser;
+  }
+  
+  /**
+    Will initialize build a Swing file chooser in advance?
+   
+    @return True if a file chooser is to be built in advance.
+   */
+  public boolean isPrewarmFileChooser () {
+    return prewarmFileChooser;
+  }
+  
+  /**
+    Returns the timer recording how long each phase of startup took, 
+    including the construction of this object, its initialization, the 
+    installation of the XHandler and the construction of the first 
+    JFileChooser used by an XFileChooser.
+   
+    @return The startup timer for this program.
+   */
+  public XStartupTimer getStartupTimer () {
+    return startupTimer;
+  }
+  
+  /**
+    Returns a future that will complete when all startup work begun by 
+    initialize has finished, including work done in the background after 
+    initialize has returned.
+   
+    @return A future that completes when startup is finished.
+   */
+  public CompletableFuture<Void> getStartupFuture () {
+    return startupFuture;
+  }
   
+  /**
+    Arrange for something to be done once all startup work begun by 
+    initialize has finished. If startup is already finished, then the 
+    callback will be run immediately, on the calling thread; otherwise it 
+    will be run on a background thread. 
+   
+    @param callback The work to be done once startup is finished.
+   */
+  public void whenStarted (Runnable callback) {
+    startupFuture.thenRun (callback);
+  }
   
   /**
     Pass the frame that will be the primary window for the application. 
@@ -386,13 +713,7 @@ public class XOS
     this.mainWindow = mainWindow;
 	  mainWindow.getRootPane().putClientProperty
         ("defeatSystemEventQueueCheck", Boolean.TRUE);
-		mainWindow.addWindowListener (new WindowAdapter()
-		  {
-		    public void windowClosing (WindowEvent e) {
-          handleQuit();
-		    } // end WindowClosing
-		  } // end window listener 
-		); 
+		XSwingSupport.quitOnClose (mainWindow, this);
   }
   
   public JFrame getMainWindow () {
@@ -433,37 +754,175 @@ public class XOS
   } // end method
   
   /**
-    Pass the class that implements the XHandler interface.
+    Pass the class that implements the XHandler interface. If this is the
+    default context, then the handler will also receive events from the 
+    operating system. 
    
     @param xHandler Class that will handle About, Quit and openFile events.
    */
   public void setXHandler (XHandler xHandler) {
 		this.xHandler = xHandler;
-    if (runningOnMacOS) {
+    if (singleInstance != null) {
+      singleInstance.handlerReady();
+    }
+    if (isDefaultContext() && (! platformInstalled)) {
+      XStartupTimer.Phase installing 
+          = startupTimer.begin (XStartup.SET_XHANDLER);
       try {
-        Object [] args = { this, macApp };
-        Class [] arglist = { 
-          Class.forName ("com.powersurgepub.xos2.XHandler"),
-          Class.forName ("com.apple.eawt.Application")
-        };
-        // Class twodue = (Class)arglist[0];
-        Class mac_class = Class.forName ("com.powersurgepub.xos2.MacHandler");
-        java.lang.reflect.Constructor new_one = mac_class.getConstructor (arglist);
-        new_one.newInstance (args);
-      } catch (ClassNotFoundException cnf) { 
-        System.out.println ("Class Not Found " + cnf.getMessage());
-      } catch (NoSuchMethodException nsm) {
-        System.out.println ("No Such Method " + nsm.getMessage());
-      } catch (InstantiationException ins) {
-        System.out.println ("Instantion Problem " + ins.getMessage());
-      } catch (IllegalAccessException ill) {
-        System.out.println ("Illegal Access " + ill.getMessage());
-      } catch (InvocationTargetException it) {
-        System.out.println ("Illegal Access " + it.getMessage());
+        XPlatformProvider provider = getPlatformProvider();
+        if (provider != null) {
+          provider.install (this);
+        }
+        platformInstalled = true;
+      } finally {
+        startupTimer.end (installing);
       }
-    } // end if running on a Mac
+    } // end if platform events not yet connected
   } // end method
   
+  /**
+    Has an XHandler been set?
+   */
+  boolean hasXHandler () {
+    return (xHandler != null);
+  }
+  
+  /**
+    Keep this program to a single running instance. If the program is 
+    already running, the passed arguments are forwarded to it, to be 
+    opened by its XHandler, and this instance should then exit. Otherwise
+    this instance becomes the running instance, and will receive the 
+    arguments of later launches. This should be called as early as 
+    possible, after the domain and program names have been set, but before
+    initialize. 
+   
+    @return True if this is now the running instance, and should carry on;
+            false if the arguments were forwarded to another instance, 
+            and this one should exit.
+    @param  args The program's command line arguments.
+    @throws IOException If the running instance could not be reached, and
+                        this one could not take its place.
+   */
+  public boolean startSingleInstance (String[] args) 
+      throws IOException {
+    XSingleInstance guard = new XSingleInstance (this);
+    if (guard.start (args)) {
+      singleInstance = guard;
+      return true;
+    }
+    return false;
+  }
+  
+  /**
+    Returns the single instance guard, if this is the running instance.
+   
+    @return The guard, or null if startSingleInstance has not made this
+            the running instance.
+   */
+  public XSingleInstance getSingleInstance () {
+    return singleInstance;
+  }
+  
+  /**
+    Returns the provider of integration with the current desktop platform,
+    finding it first if this is the first request. Providers are discovered
+    using java.util.ServiceLoader, and the supported provider with the 
+    highest priority is used. When running headless, only providers that
+    can work without a display are considered.
+   
+    @return The platform provider, or null if none is supported.
+   */
+  public static XPlatformProvider getPlatformProvider () {
+    synchronized (XPlatformProvider.class) {
+      if (! platformProviderLoaded) {
+        platformProviderLoaded = true;
+        platformProvider = findPlatformProvider 
+            (System.getProperty (OS_NAME), isHeadless());
+      }
+      return platformProvider;
+    }
+  }
+  
+  /**
+    Returns the tagger that applies file types and creators in the 
+    background, creating it if this is the first request.
+   
+    @return The shared file tagger.
+   */
+  public static XFileTagger getFileTagger () {
+    synchronized (XFileTagger.class) {
+      if (fileTagger == null) {
+        fileTagger = new XFileTagger (getPlatformProvider());
+      }
+      return fileTagger;
+    }
+  }
+  
+  /**
+    Returns the shared service that determines whether files contain text,
+    and if so with what encoding and line endings, creating it if this is
+    the first request.
+   
+    @return The shared content sniffer.
+   */
+  public static XContentSniffer getContentSniffer () {
+    synchronized (XContentSniffer.class) {
+      if (contentSniffer == null) {
+        contentSniffer = new XContentSniffer();
+      }
+      return contentSniffer;
+    }
+  }
+  
+  /**
+    Find the supported provider with the highest priority.
+   */
+  private static XPlatformProvider findPlatformProvider 
+      (String osName, boolean headless) {
+    ArrayList<XPlatformProvider> providers = new ArrayList<XPlatformProvider>();
+    Iterator<XPlatformProvider> iterator = ServiceLoader.load 
+        (XPlatformProvider.class, XOS.class.getClassLoader()).iterator();
+    while (iterator.hasNext()) {
+      try {
+        providers.add (iterator.next());
+      } catch (ServiceConfigurationError e) {
+        System.out.println ("Platform provider unavailable: " + e.getMessage());
+      }
+    }
+    Collections.sort (providers, new Comparator<XPlatformProvider>() {
+      public int compare (XPlatformProvider a, XPlatformProvider b) {
+        return Integer.compare (b.getPriority(), a.getPriority());
+      }
+    });
+    for (XPlatformProvider provider : providers) {
+      if (provider.isSupported (osName, headless)) {
+        return provider;
+      }
+    }
+    return null;
+  }
+  
+  /**
+    Are we running without a display? This is determined without loading 
+    any AWT classes: the java.awt.headless system property is honored if 
+    set, and otherwise, on platforms other than Mac OS and Windows, we are 
+    considered headless if there is no X11 or Wayland display.
+   
+    @return True if there is no display available.
+   */
+  public static boolean isHeadless () {
+    String headless = System.getProperty (HEADLESS);
+    if (headless != null) {
+      return headless.equalsIgnoreCase (TRUE);
+    }
+    String os = System.getProperty (OS_NAME, "");
+    if (os.startsWith ("Mac OS") || os.startsWith ("Windows")) {
+      return false;
+    }
+    return (System.getenv ("DISPLAY") == null
+        && System.getenv ("WAYLAND_DISPLAY") == null);
+  }
+  
   public void enablePreferences () {
     preferencesAvailable = true;
   }
@@ -481,16 +940,7 @@ public class XOS
   public void setFileMenu (JMenu fileMenu) {
     this.fileMenu = fileMenu;
     if (! runningOnMacOS) {
-      fileExitMenuItem = new javax.swing.JMenuItem();
-      fileExitMenuItem.setText("Exit");
-      fileExitMenuItem.setAccelerator (KeyStroke.getKeyStroke (KeyEvent.VK_Q,
-        Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
-      fileExitMenuItem.addActionListener(new java.awt.event.ActionListener() {
-        public void actionPerformed(java.awt.event.ActionEvent evt) {
-          handleQuit();
-        }
-      });
-      fileMenu.add(fileExitMenuItem);
+      fileExitMenuItem = XSwingSupport.addExitItem (fileMenu, this);
     }
   } // end method
   
@@ -503,15 +953,8 @@ public class XOS
   public void setHelpMenu (JMenu helpMenu) {
     this.helpMenu = helpMenu;
     if (! runningOnMacOS) {
-      helpAboutMenuItem = new javax.swing.JMenuItem();
-      helpAboutMenuItem.setText("About " + programName);
-      helpAboutMenuItem.addActionListener(new java.awt.event.ActionListener() {
-        public void actionPerformed(java.awt.event.ActionEvent evt) {
-          handleAbout();
-        }
-      });
-      helpMenu.addSeparator();
-      helpMenu.add(helpAboutMenuItem);
+      helpAboutMenuItem 
+          = XSwingSupport.addAboutItem (helpMenu, programName, this);
     }
   } // end method
   
@@ -528,8 +971,7 @@ public class XOS
     // If not running on a Mac, then use ctrl-H as an accelerator key for Help
     // (On Mac OS X, H hides the current application)
     if (! runningOnMacOS) {
-      helpMenuItem.setAccelerator (KeyStroke.getKeyStroke (KeyEvent.VK_H,
-          Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
+      XSwingSupport.setShortcut (helpMenuItem, KeyEvent.VK_H);
     } // end if not running on a Mac
     
   } // end method
@@ -547,8 +989,13 @@ public class XOS
      Standard way to respond to an About Menu Item Selection on a Mac.
    */
   public void handleAbout() {
-    if (xHandler != null) {
-      xHandler.handleAbout();
+    final XHandler handler = xHandler;
+    if (handler != null) {
+      callbackExecutor.execute (XCallbackExecutor.ABOUT, new Runnable() {
+        public void run() {
+          handler.handleAbout();
+        }
+      });
     }
   }
   
@@ -556,8 +1003,13 @@ public class XOS
      Standard way to respond to a Preferences Item Selection on a Mac.
    */
   public void handlePreferences() {
-    if (xHandler != null) {
-      xHandler.handlePreferences();
+    final XHandler handler = xHandler;
+    if (handler != null) {
+      callbackExecutor.execute (XCallbackExecutor.PREFERENCES, new Runnable() {
+        public void run() {
+          handler.handlePreferences();
+        }
+      });
     }
   }
   
@@ -567,20 +1019,125 @@ public class XOS
    
     @param inFile File to be opened. 
    */
-  public void handleOpenFile (File inFile) {
-    if (xHandler != null) {
-      xHandler.handleOpenFile (inFile);
+  public void handleOpenFile (final File inFile) {
+    final XHandler handler = xHandler;
+    if (handler != null) {
+      callbackExecutor.execute (XCallbackExecutor.OPEN_FILE, new Runnable() {
+        public void run() {
+          handler.handleOpenFile (inFile);
+        }
+      });
+    }
+  }
+
+  /**
+    Standard way to respond to a number of documents being passed to this
+    application at once. The documents are opened in chunks; see 
+    openFiles.
+   
+    @param inFiles Files to be processed by this application.
+   */
+  public void handleOpenFiles (java.util.List<File> inFiles) {
+    openFiles (inFiles);
+  }
+  
+  /**
+    Open a number of documents, passing them in chunks to the XHandler's 
+    handleOpenFiles method, and return at once. The chunks are opened one
+    after another, on the thread chosen by the OPEN_FILE callback policy:
+    by default each is posted to the event dispatch thread as an event of
+    its own, so that the user interface keeps running in between. When 
+    running headless they are all opened before this method returns. An
+    XHandler that declares itself thread-safe, with isOpenFilesThreadSafe,
+    is instead passed the chunks in parallel, on a bounded pool of 
+    background threads.
+   
+    @return The batch, which may be used to follow progress or to cancel.
+    @param  inFiles Files to be processed by this application.
+   */
+  public XBatch openFiles (java.util.List<File> inFiles) {
+    long received = System.nanoTime();
+    XOpenFilesDispatcher dispatcher;
+    synchronized (batchListeners) {
+      if (openFilesDispatcher == null) {
+        openFilesDispatcher = new XOpenFilesDispatcher();
+      }
+      dispatcher = openFilesDispatcher;
     }
+    XBatch batch = dispatcher.dispatch 
+        (inFiles, xHandler, batchListeners, callbackExecutor);
+    eventMetrics.timed (XCallbackExecutor.OPEN_FILE, received, batch);
+    return batch;
+  }
+  
+  /**
+    Follow the progress of every batch of files opened in the background.
+   
+    @param listener The listener to be told of progress.
+   */
+  public void addBatchListener (XBatchListener listener) {
+    batchListeners.add (listener);
+  }
+  
+  /**
+    Stop following the progress of batches of files.
+   
+    @param listener The listener to be removed.
+   */
+  public void removeBatchListener (XBatchListener listener) {
+    batchListeners.remove (listener);
   }
 
   /**
    Standard way to respond to a URI being passed to this application on a Mac.
+   Bursts of the same URI are coalesced, so that the XHandler sees each
+   distinct URI once; see XURIDispatcher.
 
    @param inURI The URI to be opened or otherwise processed. 
    */
   public void handleOpenURI (URI inURI) {
-    if (xHandler != null) {
-      xHandler.handleOpenURI (inURI);
+    getURIDispatcher().offer (inURI);
+  }
+  
+  /**
+    Returns the dispatcher that coalesces URIs before passing them to the
+    XHandler, creating it if this is the first request.
+   
+    @return This context's URI dispatcher.
+   */
+  public synchronized XURIDispatcher getURIDispatcher () {
+    if (uriDispatcher == null) {
+      uriDispatcher = new XURIDispatcher (this);
+    }
+    return uriDispatcher;
+  }
+  
+  /**
+    Pass a URI to the XHandler, once the dispatcher has coalesced it. The
+    dispatcher's thread is not the one the platform delivered the URI on,
+    so under the CALLER policy the URI is passed along on the event 
+    dispatch thread instead, where the platform delivers it.
+   */
+  void deliverOpenURI (final URI inURI, final long receivedNanos) {
+    final XHandler handler = xHandler;
+    if (handler != null) {
+      final Runnable task = new Runnable() {
+        public void run() {
+          handler.handleOpenURI (inURI);
+        }
+      };
+      if (callbackExecutor.getPolicy (XCallbackExecutor.OPEN_URI) 
+          == XCallbackExecutor.CALLER) {
+        XCallbackExecutor.invokeOnEventThread (new Runnable() {
+          public void run() {
+            callbackExecutor.execute 
+                (XCallbackExecutor.OPEN_URI, receivedNanos, task);
+          }
+        });
+      } else {
+        callbackExecutor.execute 
+            (XCallbackExecutor.OPEN_URI, receivedNanos, task);
+      }
     }
   }
 
@@ -590,22 +1147,210 @@ public class XOS
    
     @param inFile File to be opened. 
    */
-  public void handlePrintFile (File inFile) {
-    if (xHandler != null) {
-      xHandler.handlePrintFile (inFile);
+  public void handlePrintFile (final File inFile) {
+    XPrintPipeline pipeline = printPipeline;
+    if (pipeline != null) {
+      long received = System.nanoTime();
+      eventMetrics.timed (XCallbackExecutor.PRINT_FILE, received, 
+          pipeline.print (Collections.singletonList (inFile), batchListeners));
+      return;
+    }
+    final XHandler handler = xHandler;
+    if (handler != null) {
+      callbackExecutor.execute (XCallbackExecutor.PRINT_FILE, new Runnable() {
+        public void run() {
+          handler.handlePrintFile (inFile);
+        }
+      });
+    }
+  }
+  
+  /**
+    Standard way to respond to a request to print several files at once.
+    If a print pipeline has been set, then the files are printed by it, in
+    the background, and listeners added with addBatchListener are told of
+    progress. Otherwise the files are passed to the XHandler's 
+    handlePrintFiles method.
+   
+    @param inFiles Files to be printed, in order. 
+   */
+  public void handlePrintFiles (final java.util.List<File> inFiles) {
+    XPrintPipeline pipeline = printPipeline;
+    if (pipeline != null) {
+      long received = System.nanoTime();
+      eventMetrics.timed (XCallbackExecutor.PRINT_FILE, received, 
+          pipeline.print (inFiles, batchListeners));
+      return;
+    }
+    final XHandler handler = xHandler;
+    if (handler != null) {
+      callbackExecutor.execute (XCallbackExecutor.PRINT_FILE, new Runnable() {
+        public void run() {
+          handler.handlePrintFiles (inFiles);
+        }
+      });
     }
   }
   
+  /**
+    Have files to be printed rendered and spooled in the background by a
+    pipeline, rather than passed to the XHandler.
+   
+    @param printPipeline The pipeline to be used, or null to pass files
+                         to the XHandler once more.
+   */
+  public void setPrintPipeline (XPrintPipeline printPipeline) {
+    this.printPipeline = printPipeline;
+  }
+  
+  /**
+    Returns the pipeline used to print files, if any.
+   
+    @return The print pipeline, or null if files to be printed are passed
+            to the XHandler.
+   */
+  public XPrintPipeline getPrintPipeline () {
+    return printPipeline;
+  }
+  
   /**
      Standard way to respond to a Quit Menu Item on a Mac.
    */
   public void handleQuit() {	
-    if (xHandler != null) {
-      xHandler.handleQuit();
+    handleQuitRequest (new XQuitResponse() {
+      public void performQuit() {
+        System.exit (0);
+      }
+      public void cancelQuit() {
+        // Nobody to tell
+      }
+    });
+  }  // end handleQuit method
+  
+  /**
+    Standard way to respond to a request from the platform to quit. The 
+    flush tasks registered with the shutdown coordinator are run first,
+    and then the XHandler is asked to quit, and to answer the platform,
+    according to the QUIT callback policy. If there is no XHandler, then 
+    the quit is allowed. <p>
+
+    When called on the event dispatch thread, this returns at once: the 
+    flush tasks are run on a background thread, so that the user interface 
+    stays responsive, and the XHandler is then asked from the event 
+    dispatch thread, just as if the flush had been run there.
+   
+    @param response The platform's request for an answer.
+   */
+  public void handleQuitRequest (final XQuitResponse response) {
+    final long received = System.nanoTime();
+    if (! XCallbackExecutor.isEventThread()) {
+      getShutdownCoordinator().flush();
+      askToQuit (response, received);
+      return;
+    }
+    new XThreadFactory ("xos2-quit").newThread (new Runnable() {
+      public void run() {
+        getShutdownCoordinator().flush();
+        XCallbackExecutor.invokeOnEventThread (new Runnable() {
+          public void run() {
+            askToQuit (response, received);
+          }
+        });
+      }
+    }).start();
+  }
+  
+  /**
+    Once the flush tasks have run, ask the XHandler to quit, or else 
+    allow the quit.
+   */
+  private void askToQuit (final XQuitResponse response, long received) {
+    final XHandler handler = xHandler;
+    if (handler != null) {
+      callbackExecutor.execute (XCallbackExecutor.QUIT, received, 
+          new Runnable() {
+            public void run() {
+              handler.handleQuitRequest (response);
+            }
+          });
     } else {
-      System.exit (0);
+      response.performQuit();
     }
-  }  // end handleQuit method
+  }
+  
+  /**
+    Returns the coordinator of the work to be done before the program 
+    quits, creating it if this is the first request. 
+   
+    @return This context's shutdown coordinator.
+   */
+  public synchronized XShutdownCoordinator getShutdownCoordinator () {
+    if (shutdownCoordinator == null) {
+      shutdownCoordinator = new XShutdownCoordinator();
+      shutdownCoordinator.addFlushTask ("preferences", new Runnable() {
+        public void run() {
+          Preferences prefsNode = userPreferences;
+          if (prefsNode != null) {
+            try {
+              prefsNode.flush();
+            } catch (BackingStoreException e) {
+              throw new IllegalStateException (e);
+            }
+          }
+        }
+      });
+      shutdownCoordinator.addFlushTask ("startup", new Runnable() {
+        public void run() {
+          if (initializeCalled) {
+            startupFuture.join();
+          }
+        }
+      });
+      shutdownCoordinator.addFlushTask ("file-tags", new Runnable() {
+        public void run() {
+          XFileTagger tagger;
+          synchronized (XFileTagger.class) {
+            tagger = fileTagger;
+          }
+          if (tagger != null) {
+            tagger.flush();
+          }
+        }
+      });
+    }
+    return shutdownCoordinator;
+  }
+  
+  /**
+    Returns the executor that decides which thread each type of XHandler 
+    callback is run on. Unless configured otherwise, callbacks run on the
+    thread that delivered the event.
+   
+    @return This context's callback executor.
+   */
+  public XCallbackExecutor getCallbackExecutor () {
+    return callbackExecutor;
+  }
+  
+  /**
+    Returns the counts and latencies of the platform events handled by
+    this context.
+   
+    @return This context's event metrics.
+   */
+  public XEventMetrics getEventMetrics () {
+    return eventMetrics;
+  }
+  
+  /**
+    Make this context's event metrics available through JMX, named after
+    the program.
+   
+    @return True if the metrics are registered.
+   */
+  public boolean registerEventMetrics () {
+    return eventMetrics.register (getProgramName());
+  }
   
   /**
     See if we are running on a Macintosh.
@@ -626,20 +1371,27 @@ public class XOS
    */
   public void setMenuAtTopOfScreen (boolean menuAtTop) {
     if (runningOnMacOS) {
-      if (menuAtTop) {
-        setPref (MENU_LOCATION_KEY, MENU_AT_TOP_OF_SCREEN);
-        System.setProperty (USE_SCREEN_MENU_BAR_1, TRUE);
-        System.setProperty (USE_SCREEN_MENU_BAR_2, TRUE);
-        modifyInfoPlist ("apple.laf.useScreenMenuBar", true);
-      } else {
-        setPref (MENU_LOCATION_KEY, MENU_AT_TOP_OF_WINDOW);
-        System.setProperty (USE_SCREEN_MENU_BAR_1, FALSE);
-        System.setProperty (USE_SCREEN_MENU_BAR_2, FALSE);
-        modifyInfoPlist ("apple.laf.useScreenMenuBar", false);
-      }
+      applyMenuAtTopOfScreen (menuAtTop);
+      modifyInfoPlist (USE_SCREEN_MENU_BAR_2, menuAtTop);
     } // end if running on a Mac
   }
   
+  /**
+    Save the user's menu location preference, and set the corresponding
+    system properties, leaving the Info.plist file alone.
+   */
+  private void applyMenuAtTopOfScreen (boolean menuAtTop) {
+    if (menuAtTop) {
+      setPref (MENU_LOCATION_KEY, MENU_AT_TOP_OF_SCREEN);
+      System.setProperty (USE_SCREEN_MENU_BAR_1, TRUE);
+      System.setProperty (USE_SCREEN_MENU_BAR_2, TRUE);
+    } else {
+      setPref (MENU_LOCATION_KEY, MENU_AT_TOP_OF_WINDOW);
+      System.setProperty (USE_SCREEN_MENU_BAR_1, FALSE);
+      System.setProperty (USE_SCREEN_MENU_BAR_2, FALSE);
+    }
+  }
+  
   /**
     Set a preference for brushed metal.
    
@@ -660,87 +1412,47 @@ public class XOS
     } // end if running on a Mac
   } // end method
   
+  /**
+    Set a boolean value in the Info.plist file within the application bundle
+    for this program, if there is one. The file is only rewritten if the 
+    value actually changes.
+   
+    @return True if the Info.plist file was found and could be updated.
+    @param name  The key whose value is to be set.
+    @param value The new value.
+   */
   public boolean modifyInfoPlist (String name, boolean value) {
+    return modifyInfoPlist (Collections.singletonMap (name, value));
+  }
+  
+  /**
+    Set a number of boolean values in the Info.plist file within the 
+    application bundle for this program, if there is one. The file is read
+    once, all of the changes are applied, and the file is then rewritten 
+    only if something actually changed. Edits are made one at a time, so
+    that one made in the background during startup can't overlap another,
+    and be lost.
+   
+    @return True if the Info.plist file was found and could be updated.
+    @param changes The keys and the values to be set.
+   */
+  public boolean modifyInfoPlist (Map<String, Boolean> changes) {
     boolean ok = false;
-    File infoPlistIn = new File (userDirString + "/" + programNameNoSpace 
+    File infoPlist = new File (userDirString + "/" + programNameNoSpace 
         + ".app" + "/Contents", "Info.plist");
-    if (infoPlistIn.exists()) {
-      if (infoPlistIn.isFile()) {
-        File infoPlistOut = new File (userDirString + "/" + programNameNoSpace 
-            + ".app" + "/Contents", "Info_new.plist");
-        File infoPlistOld = new File (userDirString + "/" + programNameNoSpace 
-            + ".app" + "/Contents", "Info_old.plist");
-        XTextFile in = new XTextFile (infoPlistIn); 
-        XTextFile out = new XTextFile (infoPlistOut); 
-        ok = true;
+    if (infoPlist.isFile()) {
+      synchronized (XPlistEditor.class) {
+        XPlistEditor editor = new XPlistEditor (infoPlist);
         try {
-          in.openForInput(); 
-          out.openForOutput(); 
-        } catch (Exception e) {
-          ok = false;
+          editor.setBooleans (changes);
+          editor.save();
+          ok = true;
+        } catch (IOException e) {
+          System.out.println 
+              ("File/IO Exception while modifying Info.plist file: "
+              + e.getMessage());
         }
-        if (ok) {
-          String line = "";;
-          boolean nextLine = false;
-          try {
-            line = in.readLine(); 
-          } catch (Exception e) {
-            ok = false;
-          }
-          while ((! in.isAtEnd()) && ok) { 
-            if (nextLine) {
-              StringBuffer modLine = new StringBuffer(line);
-              int valueIndex = modLine.indexOf ("true");
-              int valueLength = 4;
-              if (valueIndex < 0) {
-                valueIndex = modLine.indexOf ("false");
-                valueLength = 5;
-              }
-              if (valueIndex >= 0) {
-                modLine.delete (valueIndex, valueIndex + valueLength);
-                if (value) {
-                  modLine.insert (valueIndex, TRUE);
-                } else {
-                  modLine.insert (valueIndex, FALSE);
-                }
-                line = modLine.toString();
-              } // end if we found true or false
-            } // end if this is the line after the brushMetalLook key line
-            nextLine = false;
-            if (line.indexOf ("<key>" + name + "</key>") >= 0) {
-              nextLine = true;
-            }
-            try {
-              out.writeLine(line); 
-            } catch (Exception e) {
-              ok = false;
-            }
-            try {
-              line = in.readLine(); 
-            } catch (Exception e) {
-              ok = false;
-            }
-          } 
-          try {
-            in.close(); 
-            out.close();
-          } catch (Exception e) {
-            ok = false;
-          }
-          if (ok) {
-            if (infoPlistOld.exists()) {
-              infoPlistOld.delete();
-            }
-            infoPlistIn.renameTo (infoPlistOld);
-            infoPlistIn = new File (userDirString + "/" + programNameNoSpace 
-                + ".app" + "/Contents", "Info.plist");
-            infoPlistOut.renameTo (infoPlistIn);
-          } else {
-            System.out.println 
-                ("File/IO Exception while modifying Info.plist file");
-          } // end if not ok
-        } // end if not ok earlier
-      } // end if Info.plist is a file
+      }
     } // end if Info.plist exists
     return ok;
   }
@@ -787,13 +1499,27 @@ public class XOS
   }
   
   /**
-    Get the user preferred line separators to be used.
+    Get the user preferred line separators to be used. Until initialize is 
+    called, these are the system's own line separators; after that, they 
+    are Unix line feeds unless the user has chosen a platform.
    
     @return String containing the line separators 
             to be used.
    */
   public String getLineSep () {
-    return prefLineSep;
+    return lineSeparator.getLineSep();
+  }
+  
+  /**
+    Get the user preferred line separators to be used, along with the 
+    same characters already encoded in common character sets. The returned
+    object won't change; if the preference changes, a different object
+    will be returned by later calls. 
+   
+    @return The line separator to be used.
+   */
+  public XLineSeparator getLineSeparator () {
+    return lineSeparator;
   }
   
   /**
@@ -803,9 +1529,17 @@ public class XOS
             should be used.
    */
   public String getLineSepPlatform () {
-    prefLineSepPlatform = getPref (LINE_SEP_KEY, sysLineSep);
-    prefLineSep = getLineSep (prefLineSepPlatform);
-    return prefLineSepPlatform;
+    return lineSeparator.getPlatform();
+  }
+  
+  /**
+    Take the line separator from the user's preference. As ever, the 
+    default is the system's own line separator characters, which are not
+    a platform identifier, and so select Unix line feeds.
+   */
+  private void refreshLineSeparator () {
+    lineSeparator = XLineSeparator.forPlatform 
+        (getPref (LINE_SEP_KEY, sysLineSep));
   }
   
   /**
@@ -844,8 +1578,7 @@ public class XOS
         || lineSepPlatform.equals (LINE_SEP_PLATFORM_UNIX)
         || lineSepPlatform.equals (LINE_SEP_PLATFORM_DOS)) {
       setPref (LINE_SEP_KEY, lineSepPlatform);
-      prefLineSepPlatform = lineSepPlatform;
-      prefLineSep = getLineSep (lineSepPlatform);
+      lineSeparator = XLineSeparator.forPlatform (lineSepPlatform);
     }
   }
   
@@ -937,11 +1670,7 @@ public class XOS
     @return The desired value, if found.
    */  
   public String getPref (String key) {
-    String pref = "";
-    if (userPreferences != null) {
-      pref = userPreferences.get(key, "");
-    }
-    return pref;
+    return getPref (key, "");
   }
   
   /** 
@@ -954,9 +1683,24 @@ public class XOS
     @return The desired value, if found.
    */  
   public String getPref (String key, String defaultValue) {
-    String pref = defaultValue;
-    if (userPreferences != null) {
-      pref = userPreferences.get(key, defaultValue);
+    String pref = prefCache.get (key);
+    if (pref == null) {
+      Preferences prefsNode = userPreferences;
+      if (prefsNode == null) {
+        return defaultValue;
+      }
+      pref = prefsNode.get (key, null);
+      if (pref == null) {
+        pref = NO_PREF;
+      }
+      // Don't overwrite a newer value stored by a change listener
+      String newer = prefCache.putIfAbsent (key, pref);
+      if (newer != null) {
+        pref = newer;
+      }
+    }
+    if (pref == NO_PREF) {
+      return defaultValue;
     }
     return pref;
   }
@@ -972,8 +1716,13 @@ public class XOS
    */  
   public int getPrefAsInt (String key, int defaultValue) {
     int prefInt = defaultValue;
-    if (userPreferences != null) {
-      prefInt = userPreferences.getInt (key, defaultValue);
+    String pref = getPref (key, null);
+    if (pref != null) {
+      try {
+        prefInt = Integer.parseInt (pref);
+      } catch (NumberFormatException e) {
+        // Ignore, and return the default value, as Preferences would
+      }
     }
     return prefInt;
   }
@@ -986,6 +1735,7 @@ public class XOS
    */  
   public void setPref (String key, String data) {
     userPreferences.put (key, data);
+    prefCache.put (key, data);
   }
   
   /** 
@@ -997,12 +1747,15 @@ public class XOS
    */ 
   public void setPref (String key, int data) {
     userPreferences.putInt (key, data);
+    prefCache.put (key, Integer.toString (data));
   }
   
   /**
      Replaces a from String, when found in an input String, with a to
      String. All occurrences of the from String will be replaced. The from
-     String and the to String may be different lengths. 
+     String and the to String may be different lengths. When a number of
+     replacements are to be made to the same text, or the same replacement 
+     is to be made many times, an XReplacer will do the job more quickly.
     
      @return Input string, but with any occurrences of the from string
              replaced with the to string.
@@ -1015,22 +1768,34 @@ public class XOS
    */
   public static String replaceString 
       (String inString, String fromString, String toString) {
-    int i = 0;
     int fromLength = fromString.length();
-    int toLength = toString.length();
-		StringBuffer s = new StringBuffer (inString);
-    while (i <= (s.length() - fromLength)) {
-      // System.out.println ("i = " + String.valueOf(i));
-      // System.out.println ("fromLength = " + String.valueOf(fromLength));
-      // System.out.println ("fromString = " + fromString);
-      // System.out.println ("inString = " + inString);
-      if (fromString.equals (s.substring (i, i + fromLength))) {
-        s.replace (i, i + fromLength, toString);
-        i = i + toLength;
-      } else {
-        i++;
+    if (fromLength == 0) {
+      if (toString.length() == 0) {
+        return inString;
+      }
+      // Insert the to String before every character, and at the end
+      StringBuilder s = new StringBuilder 
+          (inString.length() * (toString.length() + 1) + toString.length());
+      for (int i = 0; i < inString.length(); i++) {
+        s.append (toString);
+        s.append (inString.charAt (i));
       }
+      s.append (toString);
+      return s.toString();
+    }
+    int i = inString.indexOf (fromString);
+    if (i < 0) {
+      return inString;
     }
+		StringBuilder s = new StringBuilder (inString.length() + 16);
+    int start = 0;
+    while (i >= 0) {
+      s.append (inString, start, i);
+      s.append (toString);
+      start = i + fromLength;
+      i = inString.indexOf (fromString, start);
+    }
+    s.append (inString, start, inString.length());
 		return s.toString();
 	} // end of method replaceString
   
@@ -1042,6 +1807,8 @@ public class XOS
      @param  inStr      The input string. It will be broken up into words by 
                         looking for punctuation or white space between words, 
                         or transitions from lower- to upper-case. 
+                        Programs applying the same style repeatedly should 
+                        use an XCaseConverter instead. 
     
      @param  delimiter  Something to be inserted between words. May contain 
                         zero, one or more characters. 
@@ -1066,70 +1833,55 @@ public class XOS
    */
   public static String wordDemarcation 
       (String inStr, String delimiter, int firstCase, int leadingCase, int normalCase) {
-    StringBuffer workBuf = new StringBuffer ();
-    char c;
-    boolean charUpper = false;
-    boolean lastCharUpper = true;
-    boolean newWord = true;
-    int wordCount = 0;
-    int newCase = 0;
-    int length = inStr.length();
-    for (int i = 0; i < length; i++) {
-      lastCharUpper = charUpper;
-      c = inStr.charAt (i);
-      newCase = normalCase;
-      charUpper = false;
-      if (Character.isUpperCase (c)) {
-        charUpper = true;
-      }
-      if (Character.isLetterOrDigit (c)) {
-        if (charUpper && (! lastCharUpper)) {
-          newWord = true;
-        }
-        if (newWord) {
-          wordCount++;          
-          if (wordCount == 1) {
-            newCase = firstCase;
-          } else {
-            newCase = leadingCase;
-            workBuf.append (delimiter);
-          }
-          newWord = false;
-        } // end if new word
-        if (newCase > 0) {
-          workBuf.append (Character.toUpperCase (c));
-        }
-        else
-        if (newCase < 0) {
-          workBuf.append (Character.toLowerCase (c));
-        } else {
-          workBuf.append (c);
-        }
-      } else {
-        newWord = true;
-      }
-    } // end for every character in input string
-    return workBuf.toString();
+    return new XCaseConverter (delimiter, firstCase, leadingCase, normalCase)
+        .convert (inStr);
   } // end of wordDemarcation method
   
   /**
     Ensures that the operating system will treat a file as a standard
     text file. When running on a Mac, the file will be given an appropriate
-    file type and creator ("ttxt").
+    file type and creator; on Linux, these will be recorded as extended 
+    attributes.
    
     @return       True if everything went ok, false if there were any problems.
     @param file   A File that has already been created. 
    */
   public boolean designateAsTextFile (File file) {  
-    if (runningOnMacOS) {
-      boolean typeOK = setFileTypeText (file);
-      boolean creatorOK = setFileCreator (file, 1128484686);
+    XPlatformProvider provider = getPlatformProvider();
+    if (provider != null) {
+      boolean typeOK = provider.setFileType (file, FILE_TYPE_TEXT);
+      boolean creatorOK = provider.setFileCreator (file, FILE_CREATOR_TEXT);
       return (typeOK && creatorOK);
     } else {
       return true;
     }
   } // end method
   
+  /**
+    Arranges for a file to be designated as a standard text file, in the
+    background, so that the caller need not wait. Use 
+    getFileTagger().flush() to wait for outstanding designations.
+   
+    @param file   A File that has already been created. 
+   */
+  public void designateAsTextFileLater (File file) {
+    getFileTagger().tagAsText (file);
+  } // end method
+  
+  /**
+    Determines whether a file contains text, and if so, its character 
+    encoding and line ending style. Results are remembered until the file
+    changes. 
+   
+    @return       The content of the file.
+    @param file   The file of interest. 
+    @throws IOException If the file cannot be read.
+   */
+  public XContentSniffer.Content sniffContent (File file) 
+      throws IOException {
+    return getContentSniffer().sniff (file);
+  } // end method
+  
   /**
     Sets the file type to that of a text file when running on a Mac. 
    
@@ -1137,15 +1889,7 @@ public class XOS
     @param file   A File that has already been created. 
    */
   public boolean setFileTypeText (File file) {  
-    boolean ok = true;
-    if (runningOnMacOS) {
-      try {
-        FileManager.setFileType (file.getPath(), 1413830740);
-      } catch (IOException e) {
-        ok = false;
-      }
-    } // end if Mac
-    return ok;
+    return setFileType (file, FILE_TYPE_TEXT);
   } // end method
   
   /**
@@ -1156,15 +1900,11 @@ public class XOS
     @param type   A standard Mac OS File Type.
    */
   public boolean setFileType (File file, int type) {  
-    boolean ok = true;
-    if (runningOnMacOS) {
-      try {
-        FileManager.setFileType (file.getPath(), type);
-      } catch (IOException e) {
-        ok = false;
-      }
-    } // end if Mac
-    return ok;
+    XPlatformProvider provider = getPlatformProvider();
+    if (provider != null) {
+      return provider.setFileType (file, type);
+    }
+    return true;
   } // end method
   
   /**
@@ -1175,15 +1915,11 @@ public class XOS
     @param creator  A standard Mac OS File creator.
    */
   public boolean setFileCreator (File file, int creator) {  
-    boolean ok = true;
-    if (runningOnMacOS) {
-      try {
-        FileManager.setFileCreator (file.getPath(), creator);
-      } catch (IOException e) {
-        ok = false;
-      }
-    } // end if Mac
-    return ok;
+    XPlatformProvider provider = getPlatformProvider();
+    if (provider != null) {
+      return provider.setFileCreator (file, creator);
+    }
+    return true;
   } // end method
   
   /**
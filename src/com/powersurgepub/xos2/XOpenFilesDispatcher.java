@@ -0,0 +1,184 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+
+/**
+  Splits batches of files to be opened into chunks, and passes them to the
+  XHandler one chunk at a time. Unless the OPEN_FILE callback policy sends
+  them to background threads, each chunk is posted to the event dispatch
+  thread as an event of its own, so that the user interface keeps running
+  between chunks, and the batch can be cancelled part way through. A
+  handler that declares itself thread-safe is instead passed the chunks in
+  parallel, on a bounded pool of background threads. Either way the thread
+  delivering the files (usually the event dispatch thread) returns at
+  once. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+class XOpenFilesDispatcher {
+
+  /** The most files passed to the handler at once. */
+  static final int              CHUNK_SIZE          = 16;
+
+  /** The most chunks waiting for a thread. */
+  static final int              QUEUE_CAPACITY      = 1024;
+
+  private static final int      MAX_THREADS         = 4;
+
+  private ThreadPoolExecutor    executor            = null;
+
+  XOpenFilesDispatcher () {
+  }
+
+  /**
+    Returns the pool used for thread-safe handlers, creating it the first 
+    time one is seen.
+   */
+  private synchronized ThreadPoolExecutor getExecutor () {
+    if (executor == null) {
+      int threads = Math.min 
+          (MAX_THREADS, Runtime.getRuntime().availableProcessors());
+      executor = new ThreadPoolExecutor (threads, threads, 
+          30, TimeUnit.SECONDS, 
+          new ArrayBlockingQueue<Runnable> (QUEUE_CAPACITY),
+          new XThreadFactory ("xos2-open-files"),
+          // If the queue is ever full, slow down whoever is adding to it
+          new ThreadPoolExecutor.CallerRunsPolicy());
+      executor.allowCoreThreadTimeOut (true);
+    }
+    return executor;
+  }
+
+  /**
+    Start opening a batch of files.
+
+    @return The batch, which may be used to follow progress or to cancel.
+    @param  files     The files to be opened.
+    @param  handler   The handler that will open them, or null if there
+                      is no handler yet, in which case the batch is
+                      skipped.
+    @param  listeners The listeners to be told of progress.
+    @param  callbacks Decides where chunks are run for handlers that are
+                      not thread-safe.
+   */
+  XBatch dispatch (List<File> files, final XHandler handler,
+      List<XBatchListener> listeners, final XCallbackExecutor callbacks) {
+    final XBatch batch = new XBatch (files, listeners);
+    List<File> all = batch.getFiles();
+    if (handler == null) {
+      batch.cancel();
+      batch.setChunks (0);
+      return batch;
+    }
+    int chunks = (all.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    batch.setChunks (chunks);
+    if (handler.isOpenFilesThreadSafe()) {
+      Executor runner = getExecutor();
+      for (int start = 0; start < all.size(); start = start + CHUNK_SIZE) {
+        final List<File> chunk = all.subList 
+            (start, Math.min (all.size(), start + CHUNK_SIZE));
+        runner.execute (new Runnable() {
+          public void run() {
+            batch.runChunk (handler, chunk);
+          }
+        });
+      }
+    } 
+    else
+    if (chunks > 0) {
+      ChunkChain chain = new ChunkChain (batch, handler, all, callbacks);
+      if (! chain.handOff()) {
+        chain.run();
+      }
+    }
+    return batch;
+  } // end method dispatch
+
+  /**
+    Passes the chunks of a batch to a handler that is not thread-safe, one
+    after another, handing each chunk on to the thread chosen by the 
+    OPEN_FILE policy only once the one before it is done.
+   */
+  private static class ChunkChain 
+      implements Runnable {
+
+    private final XBatch              batch;
+    private final XHandler            handler;
+    private final List<File>          files;
+    private final XCallbackExecutor   callbacks;
+    private int                       next = 0;
+
+    ChunkChain (XBatch batch, XHandler handler, List<File> files, 
+        XCallbackExecutor callbacks) {
+      this.batch = batch;
+      this.handler = handler;
+      this.files = files;
+      this.callbacks = callbacks;
+    }
+
+    public void run () {
+      do {
+        int start = next;
+        next = Math.min (files.size(), start + CHUNK_SIZE);
+        boolean finished = false;
+        try {
+          batch.runChunk (handler, files.subList (start, next));
+          finished = true;
+        } finally {
+          if (! finished) {
+            // An Error escaped the handler: skip the rest of the batch, 
+            // so that its future still completes
+            batch.cancel();
+            for (; next < files.size(); next = next + CHUNK_SIZE) {
+              batch.chunkSkipped();
+            }
+          }
+        }
+      } while (next < files.size() && ! handOff());
+    }
+
+    /**
+      Hand the next chunk on to the thread that is to run it.
+
+      @return True if it was handed on; false if there is no event 
+              dispatch thread, when running headless, and the chunk should 
+              be run by the current thread.
+     */
+    boolean handOff () {
+      switch (callbacks.getPolicy (XCallbackExecutor.OPEN_FILE)) {
+        case XCallbackExecutor.VIRTUAL_THREAD:
+        case XCallbackExecutor.POOL:
+          callbacks.run (XCallbackExecutor.OPEN_FILE, this);
+          return true;
+        default:
+          if (XOS.isHeadless()) {
+            return false;
+          }
+          // Even on the event dispatch thread, post the chunk as an event 
+          // of its own, so that other events are handled in between
+          java.awt.EventQueue.invokeLater (this);
+          return true;
+      }
+    }
+
+  } // end class ChunkChain
+
+} // end class XOpenFilesDispatcher
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import jdk.jfr.*;
+
+/**
+  A Java Flight Recorder event recording one phase of startup, as timed by
+  XStartupTimer. This is kept in a class of its own, so that XStartupTimer
+  can still be used in a runtime that lacks the jdk.jfr module. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+@Name ("com.powersurgepub.xos2.StartupPhase")
+@Label ("Startup Phase")
+@Category ({"xos2", "Startup"})
+@Description ("A timed phase of xos2 program startup")
+@StackTrace (false)
+class XPhaseEvent 
+    extends Event {
+
+  @Label ("Phase")
+  String    phase;
+
+  /**
+    Start timing an event for a phase.
+
+    @return The event, to be passed to end when the phase is done.
+    @param name The name of the phase.
+   */
+  static Object begin (String name) {
+    XPhaseEvent event = new XPhaseEvent();
+    if (! event.isEnabled()) {
+      return null;
+    }
+    event.phase = name;
+    event.begin();
+    return event;
+  }
+
+  /**
+    Finish timing a phase, and emit its event if it passes the recording's
+    thresholds.
+
+    @param event The object returned by begin.
+   */
+  static void end (Object event) {
+    XPhaseEvent phaseEvent = (XPhaseEvent)event;
+    phaseEvent.end();
+    if (phaseEvent.shouldCommit()) {
+      phaseEvent.commit();
+    }
+  }
+
+} // end class XPhaseEvent
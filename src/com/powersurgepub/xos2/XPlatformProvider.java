@@ -0,0 +1,101 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+
+/**
+  A provider of integration with a particular desktop platform. Providers
+  are discovered with java.util.ServiceLoader, by listing them in
+  META-INF/services/com.powersurgepub.xos2.XPlatformProvider, and XOS
+  uses the supported provider with the highest priority. XOS looks for a
+  provider only when one is first needed. It does so even when running 
+  headless, so that file tagging still works, and passes isSupported a
+  flag saying so; a provider that needs a display should then decline. <p>
+
+  Since every listed provider is instantiated in order to ask whether it is
+  supported, a provider's constructor, getPriority and isSupported methods
+  should be cheap, and should not load any platform classes (AWT or 
+  Swing). Such classes should only be touched once install
+  has been called. <p>
+
+  The following providers are included with xos2: <ul><li>
+    XLinuxProvider - Linux, without loading any AWT classes; </li><li>
+    XDesktopProvider - java.awt.Desktop, for any other desktop, including
+    the Mac. </li>
+  </ul>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public interface XPlatformProvider {
+
+  /**
+    Returns a short name identifying this provider.
+
+    @return The provider name.
+   */
+  public String getName ();
+
+  /**
+    Returns the priority of this provider. When more than one provider is
+    supported, the one with the highest priority is used.
+
+    @return The provider priority.
+   */
+  public int getPriority ();
+
+  /**
+    Can this provider be used in the current environment?
+
+    @return True if this provider can be used.
+    @param osName   The name of the operating system, from the os.name
+                    system property.
+    @param headless True if there is no display available, in which case
+                    only a provider that can work without one, and 
+                    without loading AWT, should say it is supported.
+   */
+  public boolean isSupported (String osName, boolean headless);
+
+  /**
+    Connect the platform's application events (About, Preferences, Open,
+    Print and Quit) to an XOS context, which will pass them along to its
+    XHandler. This will be called at most once.
+
+    @param xos The XOS context that is to receive platform events.
+   */
+  public void install (XOS xos);
+
+  /**
+    Sets the file type of a file, on platforms that support file types.
+
+    @return True if everything went ok, false if there were any problems.
+    @param file   A File that has already been created.
+    @param type   A standard Mac OS File Type.
+   */
+  public boolean setFileType (File file, int type);
+
+  /**
+    Sets the file creator of a file, on platforms that support file
+    creators.
+
+    @return True if everything went ok, false if there were any problems.
+    @param file     A File that has already been created.
+    @param creator  A standard Mac OS File creator.
+   */
+  public boolean setFileCreator (File file, int creator);
+
+} // end interface XPlatformProvider
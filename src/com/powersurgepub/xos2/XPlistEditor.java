@@ -0,0 +1,394 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.file.*;
+  import java.util.*;
+  import javax.xml.parsers.*;
+  import javax.xml.transform.*;
+  import javax.xml.transform.dom.*;
+  import javax.xml.transform.stream.*;
+  import org.w3c.dom.*;
+  import org.xml.sax.*;
+
+/**
+  An editor for an XML property list, such as the Info.plist file found
+  within a Mac application bundle. The file is parsed once into an
+  in-memory model, any number of changes may then be made, and the file is
+  written back only if something actually changed. <p>
+
+  A key is found wherever it appears in the property list, including within
+  nested dictionaries, and its value is the element that follows it,
+  regardless of how the file has been broken into lines. The first
+  occurrence of each key is the one that is read and modified. <p>
+
+  When saved, the modified property list is written to a temporary file,
+  the prior version is copied to Info_old.plist (or the equivalent for
+  other file names), and the temporary file then atomically replaces the
+  original. <p>
+
+  Following is typical code that would be used to access XPlistEditor. <p>
+
+  <pre><code>
+    XPlistEditor plist = new XPlistEditor (new File (contents, "Info.plist"));
+    plist.setBoolean ("apple.laf.useScreenMenuBar", true);
+    plist.setBoolean ("apple.awt.brushMetalLook", false);
+    plist.save();
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XPlistEditor {
+
+  public  static final String   KEY           = "key";
+  public  static final String   STRING        = "string";
+  public  static final String   TRUE          = "true";
+  public  static final String   FALSE         = "false";
+
+  private static final String   XML_DECLARATION
+      = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+  private static final String   LINE_END      = "\n";
+
+  /** Suffix added to the base file name for the backup copy. */
+  public  static final String   OLD_SUFFIX    = "_old";
+
+  private  File                 plistFile;
+  private  Document             document      = null;
+
+  /** The value element following the first occurrence of each key. */
+  private  HashMap<String, Element> values    = null;
+
+  private  boolean              modified      = false;
+
+  /**
+    Creates an editor for the passed property list file. The file will not
+    be read until the first request to examine or change it.
+
+    @param plistFile The property list file to be edited.
+   */
+  public XPlistEditor (File plistFile) {
+    this.plistFile = plistFile;
+  }
+
+  /**
+    Returns the file being edited.
+
+    @return The property list file.
+   */
+  public File getFile () {
+    return plistFile;
+  }
+
+  /**
+    Parse the file, if it has not already been parsed.
+
+    @throws IOException If the file cannot be read or is not well formed.
+   */
+  public void load ()
+      throws IOException {
+    if (document != null) {
+      return;
+    }
+    try {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setValidating (false);
+      factory.setNamespaceAware (false);
+      // Don't go looking for Apple's DTD on the network
+      try {
+        factory.setFeature
+            ("http://apache.org/xml/features/nonvalidating/load-external-dtd",
+             false);
+      } catch (ParserConfigurationException e) {
+        // Parser doesn't support the feature, so it won't load the DTD anyway
+      }
+      DocumentBuilder builder = factory.newDocumentBuilder();
+      document = builder.parse (plistFile);
+      document.setXmlStandalone (true);
+    } catch (ParserConfigurationException e) {
+      throw new IOException ("XML parser unavailable: " + e.getMessage());
+    } catch (SAXException e) {
+      throw new IOException
+          (plistFile.toString() + " is not a valid property list: "
+          + e.getMessage());
+    }
+
+    values = new HashMap<String, Element>();
+    NodeList keys = document.getElementsByTagName (KEY);
+    for (int i = 0; i < keys.getLength(); i++) {
+      Element key = (Element)keys.item (i);
+      String name = key.getTextContent().trim();
+      Element value = nextElement (key);
+      if (value != null && (! values.containsKey (name))) {
+        values.put (name, value);
+      }
+    }
+  } // end method load
+
+  private static Element nextElement (Node node) {
+    Node next = node.getNextSibling();
+    while (next != null && next.getNodeType() != Node.ELEMENT_NODE) {
+      next = next.getNextSibling();
+    }
+    return (Element)next;
+  }
+
+  /**
+    Does the property list contain the passed key?
+
+    @return True if the key is present, with a value following it.
+    @param  key The key to look for.
+    @throws IOException If the file cannot be read.
+   */
+  public boolean containsKey (String key)
+      throws IOException {
+    load();
+    return values.containsKey (key);
+  }
+
+  /**
+    Returns the value for a key as a String. Boolean values are returned as
+    "true" or "false".
+
+    @return The value for the key, or null if the key is not present or its
+            value is a dictionary or array.
+    @param  key The key whose value is desired.
+    @throws IOException If the file cannot be read.
+   */
+  public String getString (String key)
+      throws IOException {
+    load();
+    Element value = values.get (key);
+    if (value == null) {
+      return null;
+    }
+    String type = value.getTagName();
+    if (type.equals (TRUE) || type.equals (FALSE)) {
+      return type;
+    }
+    if (type.equals ("dict") || type.equals ("array")) {
+      return null;
+    }
+    return value.getTextContent();
+  }
+
+  /**
+    Returns the value for a key as a boolean.
+
+    @return The value for the key, or the default if the key is not present.
+    @param  key          The key whose value is desired.
+    @param  defaultValue The value to return if the key is not present.
+    @throws IOException If the file cannot be read.
+   */
+  public boolean getBoolean (String key, boolean defaultValue)
+      throws IOException {
+    String value = getString (key);
+    if (value == null) {
+      return defaultValue;
+    }
+    return value.trim().equalsIgnoreCase (TRUE);
+  }
+
+  /**
+    Sets the value for an existing key to true or false. If the value is
+    currently a true or false element, then it will be replaced by the
+    other; if it is a string, then its text will be set to "true" or
+    "false". Nothing is done if the key is not present, or if it already
+    has the requested value.
+
+    @return True if the key was found.
+    @param  key   The key whose value is to be set.
+    @param  value The new value.
+    @throws IOException If the file cannot be read.
+   */
+  public boolean setBoolean (String key, boolean value)
+      throws IOException {
+    load();
+    Element current = values.get (key);
+    if (current == null) {
+      return false;
+    }
+    String newValue = value ? TRUE : FALSE;
+    String type = current.getTagName();
+    if (type.equals (TRUE) || type.equals (FALSE)) {
+      if (! type.equals (newValue)) {
+        Element replacement = document.createElement (newValue);
+        current.getParentNode().replaceChild (replacement, current);
+        values.put (key, replacement);
+        modified = true;
+      }
+    }
+    else
+    if (! current.getTextContent().trim().equals (newValue)) {
+      current.setTextContent (newValue);
+      modified = true;
+    }
+    return true;
+  } // end method setBoolean
+
+  /**
+    Sets the text of the value for an existing key. Nothing is done if the
+    key is not present, or if it already has the requested value.
+
+    @return True if the key was found.
+    @param  key   The key whose value is to be set.
+    @param  value The new value.
+    @throws IOException If the file cannot be read.
+   */
+  public boolean setString (String key, String value)
+      throws IOException {
+    load();
+    Element current = values.get (key);
+    if (current == null) {
+      return false;
+    }
+    String type = current.getTagName();
+    if (type.equals (TRUE) || type.equals (FALSE)
+        || type.equals ("dict") || type.equals ("array")) {
+      Element replacement = document.createElement (STRING);
+      replacement.setTextContent (value);
+      current.getParentNode().replaceChild (replacement, current);
+      values.put (key, replacement);
+      modified = true;
+    }
+    else
+    if (! current.getTextContent().equals (value)) {
+      current.setTextContent (value);
+      modified = true;
+    }
+    return true;
+  } // end method setString
+
+  /**
+    Sets a number of boolean values at once.
+
+    @return True if every key was found.
+    @param  changes The keys and the values to be set.
+    @throws IOException If the file cannot be read.
+   */
+  public boolean setBooleans (Map<String, Boolean> changes)
+      throws IOException {
+    boolean allFound = true;
+    for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+      if (! setBoolean (change.getKey(), change.getValue())) {
+        allFound = false;
+      }
+    }
+    return allFound;
+  }
+
+  /**
+    Have any changes been made since the file was read or last saved?
+
+    @return True if the file needs to be saved.
+   */
+  public boolean isModified () {
+    return modified;
+  }
+
+  /**
+    Write the property list back to disk, if it has been changed.
+
+    @return True if the file was written, false if nothing had changed.
+    @throws IOException If the file could not be written.
+   */
+  public boolean save ()
+      throws IOException {
+    if (! modified) {
+      return false;
+    }
+    Path target = plistFile.toPath().toAbsolutePath();
+    Path dir = target.getParent();
+    String name = plistFile.getName();
+    String base = name;
+    String ext = "";
+    int period = name.lastIndexOf ('.');
+    if (period > 0) {
+      base = name.substring (0, period);
+      ext = name.substring (period);
+    }
+    Path temp = Files.createTempFile (dir, base + "_new", ext);
+    boolean done = false;
+    try {
+      OutputStream out = Files.newOutputStream (temp);
+      try {
+        write (out);
+      } finally {
+        out.close();
+      }
+      Files.copy (target, dir.resolve (base + OLD_SUFFIX + ext),
+          StandardCopyOption.REPLACE_EXISTING, 
+          StandardCopyOption.COPY_ATTRIBUTES);
+      try {
+        // The temporary file is private to its owner; the plist isn't
+        Files.setPosixFilePermissions
+            (temp, Files.getPosixFilePermissions (target));
+      } catch (UnsupportedOperationException e) {
+        // Not a POSIX file system
+      }
+      try {
+        Files.move (temp, target,
+            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move (temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+      done = true;
+    } finally {
+      if (! done) {
+        Files.deleteIfExists (temp);
+      }
+    }
+    modified = false;
+    return true;
+  } // end method save
+
+  /**
+    Write the property list, as currently modified, to a stream.
+
+    @param out The stream to receive the XML.
+    @throws IOException If the XML could not be written.
+   */
+  public void write (OutputStream out)
+      throws IOException {
+    load();
+    try {
+      Transformer transformer
+          = TransformerFactory.newInstance().newTransformer();
+      transformer.setOutputProperty (OutputKeys.ENCODING, "UTF-8");
+      // Write our own declaration, so that it's followed by a line break
+      transformer.setOutputProperty (OutputKeys.OMIT_XML_DECLARATION, "yes");
+      DocumentType doctype = document.getDoctype();
+      if (doctype != null) {
+        if (doctype.getPublicId() != null) {
+          transformer.setOutputProperty
+              (OutputKeys.DOCTYPE_PUBLIC, doctype.getPublicId());
+        }
+        if (doctype.getSystemId() != null) {
+          transformer.setOutputProperty
+              (OutputKeys.DOCTYPE_SYSTEM, doctype.getSystemId());
+        }
+      }
+      out.write (XML_DECLARATION.getBytes ("UTF-8"));
+      transformer.transform (new DOMSource (document), new StreamResult (out));
+      out.write (LINE_END.getBytes ("UTF-8"));
+    } catch (TransformerException e) {
+      throw new IOException
+          ("Trouble writing " + plistFile.toString() + ": " + e.getMessage());
+    }
+  } // end method write
+
+} // end class XPlistEditor
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.file.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import javax.print.*;
+
+/**
+  Prints batches of files in the background. Files are rendered on a small
+  pool of threads, several at once, while a single spooling thread sends
+  the finished documents on to the spooler strictly in the order the files
+  were given, so that a stack of pages comes out of the printer the way
+  the user asked for it. Only a few rendered documents are held waiting 
+  at any one time, however many files are in the batch. <p>
+
+  Each file counts as one unit of progress in the XBatch returned. A file
+  that cannot be rendered or spooled is counted as failed, and the rest of
+  the batch carries on. Cancelling the batch skips whatever has not yet 
+  been spooled. <p>
+
+  Following is typical code that would be used to access XPrintPipeline. <p>
+
+  <pre><code>
+    XPrintPipeline pipeline = new XPrintPipeline 
+        (new XFilePrintSpooler (new File ("/tmp/spool")));
+    xos.setPrintPipeline (pipeline);
+    ...
+    XBatch batch = pipeline.print (files);
+    batch.getFuture().join();
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XPrintPipeline {
+
+  private static final int      MAX_THREADS         = 4;
+
+  /** How many documents may be rendered ahead of the spooler, per thread. */
+  private static final int      LOOKAHEAD_PER_THREAD = 2;
+
+  private  XPrintSpooler        spooler;
+  private  XPrintRenderer       renderer;
+  private  int                  lookahead;
+  private  ThreadPoolExecutor   renderers;
+  private  ExecutorService      spooling;
+
+  /**
+    Creates a pipeline that sends each file's bytes to the spooler as they
+    are, letting the print service work out what sort of document it is.
+
+    @param spooler Where the documents are to be sent.
+   */
+  public XPrintPipeline (XPrintSpooler spooler) {
+    this (spooler, new XPrintRenderer() {
+      public Doc render (File inFile)
+          throws IOException {
+        byte[] bytes = Files.readAllBytes (inFile.toPath());
+        return new SimpleDoc (bytes, DocFlavor.BYTE_ARRAY.AUTOSENSE, null);
+      }
+    });
+  }
+
+  /**
+    Creates a pipeline with a particular way of rendering files.
+
+    @param spooler  Where the documents are to be sent.
+    @param renderer Turns files into documents; called on several threads
+                    at once.
+   */
+  public XPrintPipeline (XPrintSpooler spooler, XPrintRenderer renderer) {
+    this.spooler = spooler;
+    this.renderer = renderer;
+    int threads = Math.min 
+        (MAX_THREADS, Runtime.getRuntime().availableProcessors());
+    lookahead = threads * LOOKAHEAD_PER_THREAD;
+    renderers = new ThreadPoolExecutor (threads, threads,
+        30, TimeUnit.SECONDS, 
+        new LinkedBlockingQueue<Runnable>(),
+        new XThreadFactory ("xos2-print-render"));
+    renderers.allowCoreThreadTimeOut (true);
+    spooling = Executors.newSingleThreadExecutor 
+        (new XThreadFactory ("xos2-print-spool"));
+  }
+
+  /**
+    Start printing a batch of files. This method returns at once. 
+
+    @return The batch, which may be used to follow progress or to cancel.
+    @param  files The files to be printed, in order.
+   */
+  public XBatch print (List<File> files) {
+    return print (files, Collections.<XBatchListener>emptyList());
+  }
+
+  /**
+    Start printing a batch of files. This method returns at once. Batches 
+    are spooled one after another, in the order they were started.
+
+    @return The batch, which may be used to follow progress or to cancel.
+    @param  files     The files to be printed, in order.
+    @param  listeners The listeners to be told of progress.
+   */
+  public XBatch print (List<File> files, List<XBatchListener> listeners) {
+    final XBatch batch = new XBatch (files, listeners);
+    batch.setChunks (batch.getTotal());
+    if (batch.getTotal() > 0) {
+      spooling.execute (new Runnable() {
+        public void run() {
+          spool (batch);
+        }
+      });
+    }
+    return batch;
+  }
+
+  /**
+    Keep a limited number of renders going ahead of the spooler, and send 
+    each document on in turn as it becomes ready.
+   */
+  private void spool (XBatch batch) {
+    Iterator<File> toRender = batch.getFiles().iterator();
+    ArrayDeque<Future<Doc>> rendering = new ArrayDeque<Future<Doc>>();
+    ArrayDeque<File> waiting = new ArrayDeque<File>();
+    while (toRender.hasNext() || ! rendering.isEmpty()) {
+      while (toRender.hasNext() 
+          && rendering.size() < lookahead 
+          && ! batch.isCancelled()) {
+        final File next = toRender.next();
+        waiting.add (next);
+        rendering.add (renderers.submit (new Callable<Doc>() {
+          public Doc call()
+              throws IOException {
+            return renderer.render (next);
+          }
+        }));
+      }
+      if (batch.isCancelled()) {
+        break;
+      }
+      Future<Doc> future = rendering.remove();
+      File file = waiting.remove();
+      boolean ok = false;
+      try {
+        spooler.submit (file.getName(), future.get());
+        ok = true;
+      } catch (ExecutionException e) {
+        // Could not be rendered
+      } catch (PrintException e) {
+        // Could not be spooled
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        batch.cancel();
+      } catch (RuntimeException e) {
+        // Trouble with one file shouldn't stop the rest
+      }
+      batch.chunkDone (1, ok);
+    }
+    for (Future<Doc> future : rendering) {
+      future.cancel (false);
+      batch.chunkSkipped();
+    }
+    while (toRender.hasNext()) {
+      toRender.next();
+      batch.chunkSkipped();
+    }
+  } // end method spool
+
+  /**
+    Stop accepting new batches, and release the background threads once
+    the batches already started are done.
+   */
+  public void shutdown () {
+    spooling.shutdown();
+    renderers.shutdown();
+  }
+
+} // end class XPrintPipeline
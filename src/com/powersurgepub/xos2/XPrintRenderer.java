@@ -0,0 +1,41 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import javax.print.*;
+
+/**
+  Something that can turn a file into a document ready to be printed. 
+  Renderers are called by an XPrintPipeline on several background threads
+  at once, so an implementation must be safe to use that way. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public interface XPrintRenderer {
+
+  /**
+    Prepare a file for printing.
+
+    @return The document to be sent to the print service.
+    @param  inFile The file to be printed.
+    @throws IOException If the file could not be read or rendered.
+   */
+  public Doc render (File inFile)
+      throws IOException;
+
+} // end interface XPrintRenderer
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import javax.print.*;
+
+/**
+  Somewhere that rendered documents can be sent to be printed. An
+  XPrintPipeline calls its spooler from a single background thread, one
+  job at a time, in the order the files were passed to it. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public interface XPrintSpooler {
+
+  /**
+    Send one document to be printed.
+
+    @param  jobName The name of the print job.
+    @param  doc     The document to be printed.
+    @throws PrintException If the job could not be accepted.
+   */
+  public void submit (String jobName, Doc doc)
+      throws PrintException;
+
+} // end interface XPrintSpooler
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.xos2;
+
+/**
+  The platform's request for an answer to a request to quit, whichever
+  platform API delivered it. Exactly one of the two methods should be 
+  called. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public interface XQuitResponse {
+
+  /**
+    Let the application quit.
+   */
+  public void performQuit ();
+
+  /**
+    Tell the platform that the application will not quit after all.
+   */
+  public void cancelQuit ();
+
+} // end interface XQuitResponse
@@ -0,0 +1,468 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.util.*;
+
+/**
+  A compiled set of string substitutions that can be applied to text in
+  a single pass. The replacer is built once from a table of from and to
+  strings, and may then be applied any number of times, from any number of
+  threads, to Strings, to character streams, or to XTextFiles. <p>
+
+  Internally the from strings are compiled into an Aho-Corasick automaton,
+  so that every substitution in the table is applied in one scan of the
+  input, without allocating anything at each character position. Where
+  more than one from string could match, the match starting earliest in the
+  input wins, and among matches starting at the same position, the longest
+  wins. Replacement text is never rescanned. <p>
+
+  Following is typical code that would be used to access XReplacer. <p>
+
+  <pre><code>
+    Map&lt;String, String&gt; table = new LinkedHashMap&lt;String, String&gt;();
+    table.put ("&amp;", "&amp;amp;");
+    table.put ("&lt;", "&amp;lt;");
+    table.put ("&gt;", "&amp;gt;");
+    XReplacer replacer = new XReplacer (table);
+    String escaped = replacer.replace (text);
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XReplacer {
+
+  /** Number of characters read from a stream at one time. */
+  private  static final int   READ_CHUNK        = 8192;
+
+  /** The state to which every search returns after a match. */
+  private  static final int   ROOT              = 0;
+
+  /** Sorted transition characters for each state. */
+  private  char[][]           nextChars;
+
+  /** Target states, parallel to nextChars. */
+  private  int[][]            nextStates;
+
+  /** The failure link for each state. */
+  private  int[]              fail;
+
+  /** The number of characters matched to reach each state. */
+  private  int[]              depth;
+
+  /**
+    For each state, the state holding the longest from string that ends
+    here, or -1 if no from string ends here.
+   */
+  private  int[]              matchState;
+
+  /** The replacement for each state that completes a from string. */
+  private  String[]           replacement;
+
+  /** The length of the longest from string. */
+  private  int                maxLength         = 0;
+
+  /**
+    Creates a new replacer from a table of substitutions. Empty from
+    strings are ignored.
+
+    @param substitutions Map whose keys are the strings to be replaced, and
+                         whose values are the strings to replace them with.
+   */
+  public XReplacer (Map<String, String> substitutions) {
+    compile (substitutions);
+  }
+
+  /**
+    Creates a new replacer for a single substitution.
+
+    @param fromString String to be replaced.
+    @param toString   Replacement string.
+   */
+  public XReplacer (String fromString, String toString) {
+    compile (Collections.singletonMap (fromString, toString));
+  }
+
+  /**
+    Build the trie of from strings, then add failure links breadth-first,
+    and finally flatten the transitions into sorted arrays.
+   */
+  private void compile (Map<String, String> substitutions) {
+
+    ArrayList<TreeMap<Character, Integer>> trie
+        = new ArrayList<TreeMap<Character, Integer>>();
+    ArrayList<String> to = new ArrayList<String>();
+    ArrayList<Integer> depths = new ArrayList<Integer>();
+    trie.add (new TreeMap<Character, Integer>());
+    to.add (null);
+    depths.add (0);
+
+    for (Map.Entry<String, String> entry : substitutions.entrySet()) {
+      String from = entry.getKey();
+      if (from == null || from.length() == 0) {
+        continue;
+      }
+      int state = ROOT;
+      for (int i = 0; i < from.length(); i++) {
+        Character c = from.charAt (i);
+        Integer next = trie.get(state).get(c);
+        if (next == null) {
+          next = trie.size();
+          trie.add (new TreeMap<Character, Integer>());
+          to.add (null);
+          depths.add (i + 1);
+          trie.get(state).put (c, next);
+        }
+        state = next;
+      }
+      String toString = entry.getValue();
+      to.set (state, toString == null ? "" : toString);
+      maxLength = Math.max (maxLength, from.length());
+    } // end for each substitution
+
+    int states = trie.size();
+    nextChars = new char [states][];
+    nextStates = new int [states][];
+    fail = new int [states];
+    depth = new int [states];
+    matchState = new int [states];
+    replacement = new String [states];
+
+    for (int s = 0; s < states; s++) {
+      TreeMap<Character, Integer> transitions = trie.get (s);
+      nextChars [s] = new char [transitions.size()];
+      nextStates [s] = new int [transitions.size()];
+      int t = 0;
+      for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+        nextChars [s][t] = transition.getKey();
+        nextStates [s][t] = transition.getValue();
+        t++;
+      }
+      depth [s] = depths.get (s);
+      replacement [s] = to.get (s);
+    }
+
+    // Breadth-first, so that every failure link points to a finished state
+    matchState [ROOT] = -1;
+    fail [ROOT] = ROOT;
+    ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+    queue.add (ROOT);
+    while (! queue.isEmpty()) {
+      int s = queue.remove();
+      for (int t = 0; t < nextChars[s].length; t++) {
+        int child = nextStates [s][t];
+        if (s == ROOT) {
+          fail [child] = ROOT;
+        } else {
+          fail [child] = step (fail [s], nextChars [s][t]);
+        }
+        if (replacement [child] != null) {
+          matchState [child] = child;
+        } else {
+          matchState [child] = matchState [fail [child]];
+        }
+        queue.add (child);
+      }
+    } // end while more states to link
+  } // end method compile
+
+  /**
+    Move from one state to the next on the given character, following
+    failure links as necessary.
+   */
+  private int step (int state, char c) {
+    while (true) {
+      int i = Arrays.binarySearch (nextChars [state], c);
+      if (i >= 0) {
+        return nextStates [state][i];
+      }
+      if (state == ROOT) {
+        return ROOT;
+      }
+      state = fail [state];
+    }
+  }
+
+  /**
+    Returns the length of the longest string to be replaced.
+
+    @return The length of the longest from string, or zero if the replacer
+            has no substitutions.
+   */
+  public int getMaxLength () {
+    return maxLength;
+  }
+
+  /**
+    Apply all substitutions to the passed String.
+
+    @return Input string, but with any occurrences of the from strings
+            replaced with the corresponding to strings.
+    @param inString String to be converted.
+   */
+  public String replace (String inString) {
+    if (maxLength == 0 || inString.length() == 0) {
+      return inString;
+    }
+    char[] text = inString.toCharArray();
+    Scan scan = new Scan (text, new StringBuilder (text.length + 16), null);
+    try {
+      scan.run (text.length, true);
+    } catch (IOException e) {
+      // Cannot happen when appending to a StringBuilder
+    }
+    if (scan.replacements == 0) {
+      return inString;
+    } else {
+      return scan.builder.toString();
+    }
+  }
+
+  /**
+    Count the occurrences of the from strings in the passed String, using
+    the same rules used for replacement.
+
+    @return The number of substitutions that would be made.
+    @param inString String to be examined.
+   */
+  public int countMatches (String inString) {
+    if (maxLength == 0 || inString.length() == 0) {
+      return 0;
+    }
+    char[] text = inString.toCharArray();
+    Scan scan = new Scan (text, null, null);
+    try {
+      scan.run (text.length, true);
+    } catch (IOException e) {
+      // Cannot happen when nothing is being written
+    }
+    return scan.replacements;
+  }
+
+  /**
+    Apply all substitutions to the characters read from the passed Reader,
+    writing the results to the passed Writer. Neither stream is closed.
+
+    @return The number of substitutions made.
+    @param in  Source of characters to be converted.
+    @param out Destination for the converted characters, or null if
+               substitutions are only to be counted.
+    @throws IOException If trouble reading or writing.
+   */
+  public int replace (Reader in, Writer out)
+      throws IOException {
+    char[] buffer = new char [Math.max (READ_CHUNK, maxLength * 2)];
+    Scan scan = new Scan (buffer, null, out);
+    int length = 0;
+    int count = in.read (buffer, 0, buffer.length);
+    while (count >= 0) {
+      length = length + count;
+      scan.run (length, false);
+
+      // Discard everything already written, keeping any pending match
+      int keep = length - scan.emitted;
+      if (scan.emitted > 0) {
+        System.arraycopy (scan.text, scan.emitted, scan.text, 0, keep);
+        scan.shift (scan.emitted);
+      }
+      length = keep;
+      if (length == scan.text.length) {
+        scan.text = Arrays.copyOf (scan.text, scan.text.length * 2);
+      }
+      count = in.read (scan.text, length, scan.text.length - length);
+    } // end while more to read
+    scan.run (length, true);
+    return scan.replacements;
+  }
+
+  /**
+    Apply all substitutions to every line of an input text file, writing the
+    results to an output text file. Since the input is read a line at a
+    time, from strings containing line separators will never match. Both
+    files are closed when done.
+
+    @return The number of substitutions made.
+    @param in  Text file to be read.
+    @param out Text file to be written.
+    @throws IOException If trouble reading or writing.
+   */
+  public int replace (XTextFile in, XTextFile out)
+      throws IOException {
+    int total = 0;
+    try {
+      in.openForInput();
+      out.openForOutput();
+      String line = in.readLine();
+      while (! in.isAtEnd()) {
+        char[] text = line.toCharArray();
+        Scan scan = new Scan (text, new StringBuilder (text.length + 16), null);
+        scan.run (text.length, true);
+        total = total + scan.replacements;
+        if (scan.replacements == 0) {
+          out.writeLine (line);
+        } else {
+          out.writeLine (scan.builder.toString());
+        }
+        line = in.readLine();
+      }
+    } finally {
+      in.close();
+      out.close();
+    }
+    return total;
+  }
+
+  /**
+    The state of one scan through some text. The text is held in a buffer
+    whose first position corresponds to the first character not yet written.
+   */
+  private class Scan {
+
+    private char[]        text;
+    private StringBuilder builder;
+    private Writer        writer;
+
+    /** The current automaton state. */
+    private int           state             = ROOT;
+
+    /** Index of the next character to be examined. */
+    private int           pos               = 0;
+
+    /** Number of leading characters already written. */
+    private int           emitted           = 0;
+
+    /** Start of the best match found but not yet replaced, or -1. */
+    private int           matchStart        = -1;
+
+    /** End of the best match found but not yet replaced. */
+    private int           matchEnd          = -1;
+
+    /** State holding the replacement for the best match. */
+    private int           match             = -1;
+
+    private int           replacements      = 0;
+
+    Scan (char[] text, StringBuilder builder, Writer writer) {
+      this.text = text;
+      this.builder = builder;
+      this.writer = writer;
+    }
+
+    /**
+      Examine characters up to the given length. If this is the end of the
+      input, then everything remaining will be written; otherwise
+      characters that might still form part of a match are held back.
+     */
+    void run (int length, boolean endOfInput)
+        throws IOException {
+      while (true) {
+        if (pos < length) {
+          state = step (state, text [pos]);
+          pos++;
+          int m = matchState [state];
+          if (m >= 0) {
+            int start = pos - depth [m];
+            if (matchStart < 0
+                || start < matchStart
+                || (start == matchStart && pos > matchEnd)) {
+              matchStart = start;
+              matchEnd = pos;
+              match = m;
+            }
+          }
+          // No later match can start at or before the best one so far
+          if (matchStart >= 0 && matchStart < pos - depth [state]) {
+            replaceMatch();
+          }
+        }
+        else
+        if (endOfInput && matchStart >= 0) {
+          replaceMatch();
+        } else {
+          break;
+        }
+      } // end while scanning
+
+      if (endOfInput) {
+        write (emitted, length - emitted);
+        emitted = length;
+      }
+      else
+      if (matchStart < 0) {
+        int safe = pos - depth [state];
+        if (safe > emitted) {
+          write (emitted, safe - emitted);
+          emitted = safe;
+        }
+      }
+    } // end method run
+
+    /**
+      Write the text preceding the best match, then its replacement, and
+      resume scanning immediately following the match.
+     */
+    private void replaceMatch ()
+        throws IOException {
+      write (emitted, matchStart - emitted);
+      String to = replacement [match];
+      if (writer != null) {
+        writer.write (to);
+      }
+      else
+      if (builder != null) {
+        builder.append (to);
+      }
+      replacements++;
+      emitted = matchEnd;
+      pos = matchEnd;
+      state = ROOT;
+      matchStart = -1;
+      matchEnd = -1;
+      match = -1;
+    }
+
+    private void write (int offset, int length)
+        throws IOException {
+      if (length <= 0) {
+        return;
+      }
+      if (writer != null) {
+        writer.write (text, offset, length);
+      }
+      else
+      if (builder != null) {
+        builder.append (text, offset, length);
+      }
+    }
+
+    /**
+      Adjust all positions after the given number of leading characters
+      have been dropped from the buffer.
+     */
+    void shift (int dropped) {
+      pos = pos - dropped;
+      emitted = emitted - dropped;
+      if (matchStart >= 0) {
+        matchStart = matchStart - dropped;
+        matchEnd = matchEnd - dropped;
+      }
+    }
+
+  } // end inner class Scan
+
+} // end class XReplacer
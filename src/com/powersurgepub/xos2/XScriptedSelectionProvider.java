@@ -0,0 +1,109 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.util.*;
+
+/**
+  Answers each request for a file with the next of a series of prepared
+  answers, for use in regression runs, where the files to be chosen are 
+  known in advance. An answer may also be a cancellation. Relative files
+  are taken to be relative to the dialog's starting directory. Running out
+  of answers is treated as a mistake in the script, rather than as a 
+  cancellation, so that a run asking for more files than expected fails 
+  visibly. <p>
+
+  Following is typical code that would be used in a regression run. <p>
+
+  <pre><code>
+    XScriptedSelectionProvider script = new XScriptedSelectionProvider();
+    script.answer (new File ("input.txt"));
+    script.answerCancel();
+    XFileChooser.setDefaultSelectionProvider (script);
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XScriptedSelectionProvider 
+    implements XSelectionProvider {
+
+  /** The answers not yet given, with null standing for a cancellation. */
+  private final LinkedList<File> answers = new LinkedList<File>();
+
+  /**
+    Creates a provider with no answers yet.
+   */
+  public XScriptedSelectionProvider () {
+  }
+
+  /**
+    Creates a provider that will give the listed answers, in order.
+
+    @param files The files to be chosen, in order.
+   */
+  public XScriptedSelectionProvider (File... files) {
+    for (File file : files) {
+      answer (file);
+    }
+  }
+
+  /**
+    Add a file to be chosen, after any answers already added.
+
+    @param file The file to be chosen, or null for a cancellation.
+   */
+  public synchronized void answer (File file) {
+    answers.add (file);
+  }
+
+  /**
+    Add a cancellation, after any answers already added.
+   */
+  public synchronized void answerCancel () {
+    answers.add (null);
+  }
+
+  /**
+    Returns the number of answers not yet given.
+
+    @return The number of answers remaining.
+   */
+  public synchronized int getRemaining () {
+    return answers.size();
+  }
+
+  /**
+    Give the next answer.
+
+    @return The next file, or null for a cancellation.
+    @param  request What the program asked for.
+    @throws IllegalStateException If there are no answers left.
+   */
+  public synchronized File select (XSelectionRequest request) {
+    if (answers.isEmpty()) {
+      throw new IllegalStateException 
+          ("No scripted answer left for " + request.toString());
+    }
+    File file = answers.removeFirst();
+    if (file == null) {
+      return null;
+    }
+    return request.resolve (file);
+  }
+
+} // end class XScriptedSelectionProvider
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+
+/**
+  Answers an XFileChooser's request for a file, in place of the user. A
+  provider lets automated regression runs and batch jobs pass through code 
+  that asks for a file, without a display, and without ever constructing a 
+  dialog or loading Swing's file chooser. A provider can be given to one 
+  XFileChooser, or set as the default for all of them; where there is none, 
+  the user is asked, as usual. XScriptedSelectionProvider gives a prepared 
+  series of answers, and XNewestFileSelectionProvider answers by rule. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public interface XSelectionProvider {
+
+  /**
+    Choose a file, as the user would have done using a dialog.
+
+    @return The file chosen, or null to act as though the user cancelled.
+    @param  request What the program asked for.
+   */
+  public File select (XSelectionRequest request);
+
+} // end interface XSelectionProvider
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+
+/**
+  What a program asked for when it showed an XFileChooser dialog, as 
+  passed to an XSelectionProvider answering in place of the user. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XSelectionRequest {
+
+  private final boolean   save;
+  private final int       fileSelectionMode;
+  private final String    dialogTitle;
+  private final File      currentDirectory;
+  private final File      suggestedFile;
+
+  XSelectionRequest (boolean save, int fileSelectionMode, String dialogTitle,
+      File currentDirectory, File suggestedFile) {
+    this.save = save;
+    this.fileSelectionMode = fileSelectionMode;
+    this.dialogTitle = dialogTitle;
+    this.currentDirectory = currentDirectory;
+    this.suggestedFile = suggestedFile;
+  }
+
+  /**
+    Is a file to be saved, rather than opened?
+
+    @return True for a save dialog, false for an open dialog.
+   */
+  public boolean isSave () {
+    return save;
+  }
+
+  /**
+    Returns the kind of thing that may be chosen.
+
+    @return XFileChooser.FILES_ONLY, DIRECTORIES_ONLY or 
+            FILES_AND_DIRECTORIES.
+   */
+  public int getFileSelectionMode () {
+    return fileSelectionMode;
+  }
+
+  /**
+    May a file, rather than a directory, be chosen?
+
+    @return True unless only directories may be chosen.
+   */
+  public boolean isFileAllowed () {
+    return fileSelectionMode != XFileChooser.DIRECTORIES_ONLY;
+  }
+
+  /**
+    May a directory be chosen?
+
+    @return True unless only files may be chosen.
+   */
+  public boolean isDirectoryAllowed () {
+    return fileSelectionMode != XFileChooser.FILES_ONLY;
+  }
+
+  /**
+    Returns the title the dialog would have had.
+
+    @return The dialog title, or null if none was set.
+   */
+  public String getDialogTitle () {
+    return dialogTitle;
+  }
+
+  /**
+    Returns the directory the dialog would have started in.
+
+    @return The starting directory, or null if none was set.
+   */
+  public File getCurrentDirectory () {
+    return currentDirectory;
+  }
+
+  /**
+    Returns the file the dialog would have started with selected, 
+    typically the name suggested for a file to be saved.
+
+    @return The suggested file, or null if there is none.
+   */
+  public File getSuggestedFile () {
+    return suggestedFile;
+  }
+
+  /**
+    Returns a file relative to the starting directory, unless it is 
+    already absolute.
+
+    @return The resolved file.
+    @param  file A file, which may be relative.
+   */
+  public File resolve (File file) {
+    if (file.isAbsolute() || currentDirectory == null) {
+      return file;
+    }
+    return new File (currentDirectory, file.getPath());
+  }
+
+  public String toString () {
+    return (save ? "Save" : "Open")
+        + (dialogTitle == null ? "" : " \"" + dialogTitle + "\"")
+        + (currentDirectory == null ? "" : " in " + currentDirectory);
+  }
+
+} // end class XSelectionRequest
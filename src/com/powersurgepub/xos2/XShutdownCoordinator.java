@@ -0,0 +1,215 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.util.*;
+  import java.util.concurrent.*;
+  import java.util.concurrent.atomic.*;
+
+/**
+  Gives everything with unsaved work a chance to save it before the
+  program quits. Components register flush tasks, and when the program is 
+  asked to quit, the registered tasks are run in parallel, on a bounded
+  number of threads, with an overall deadline, before the XHandler is 
+  asked to quit. The tasks are run again when the JVM shuts down, unless
+  the last flush finished every task and no task has been registered 
+  since. <p>
+
+  XOS registers tasks to save the user's preferences, to finish the 
+  startup work (such as editing the Info.plist file) still running in the 
+  background, and to apply any file types and creators still waiting to 
+  be applied. Each XTextFile open for output registers a task to flush 
+  its buffer; since that task is registered with addWeakFlushTask, a file
+  that is never closed, and is then discarded, is not kept from being 
+  garbage collected. <p>
+
+  Following is typical code that would be used to access 
+  XShutdownCoordinator. <p>
+
+  <pre><code>
+    Runnable saveIndex = new Runnable() {
+      public void run() {
+        index.save();
+      }
+    };
+    xos.getShutdownCoordinator().addFlushTask ("index", saveIndex);
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XShutdownCoordinator {
+
+  /** The default time allowed for all flush tasks to finish. */
+  public  static final long     DEFAULT_DEADLINE_MILLIS = 5000;
+
+  /** The most flush tasks run at once. */
+  private static final int      MAX_THREADS       
+      = Math.max (4, Runtime.getRuntime().availableProcessors());
+
+  /** The registered tasks, with their names. */
+  private final ConcurrentHashMap<Runnable, String> tasks
+      = new ConcurrentHashMap<Runnable, String>();
+
+  /** The tasks registered only for as long as something else holds them. */
+  private final Map<Runnable, String> weakTasks
+      = Collections.synchronizedMap (new WeakHashMap<Runnable, String>());
+
+  private volatile long         deadlineMillis    = DEFAULT_DEADLINE_MILLIS;
+
+  /** Counts the calls to addFlushTask and addWeakFlushTask. */
+  private final AtomicLong      registrations     = new AtomicLong();
+
+  /** The registration count when a flush last finished every task. */
+  private volatile long         cleanAt           = -1;
+
+  /** The names of the tasks that failed or ran late in the last flush. */
+  private volatile List<String> unfinished        = Collections.emptyList();
+
+  /**
+    Creates a coordinator, which will also flush when the JVM shuts down.
+   */
+  public XShutdownCoordinator () {
+    Runtime.getRuntime().addShutdownHook 
+        (new Thread (new Runnable() {
+      public void run() {
+        if (cleanAt != registrations.get()) {
+          flush();
+        }
+      }
+    }, "xos2-shutdown-exit"));
+  }
+
+  /**
+    Register a task to be run before the program quits.
+
+    @param name A name for the task, for reporting.
+    @param task The work to be done.
+   */
+  public void addFlushTask (String name, Runnable task) {
+    tasks.put (task, name);
+    registrations.incrementAndGet();
+  }
+
+  /**
+    Register a task to be run before the program quits, for only as long 
+    as the task is still in use elsewhere. Once nothing else refers to the
+    task, it may be garbage collected, along with whatever it refers to, 
+    and will then not be run. Such a task should be held by the object 
+    whose work it saves.
+
+    @param name A name for the task, for reporting.
+    @param task The work to be done.
+   */
+  public void addWeakFlushTask (String name, Runnable task) {
+    weakTasks.put (task, name);
+    registrations.incrementAndGet();
+  }
+
+  /**
+    Remove a task, once there is no longer anything for it to do.
+
+    @param task The task passed to addFlushTask or addWeakFlushTask.
+   */
+  public void removeFlushTask (Runnable task) {
+    tasks.remove (task);
+    weakTasks.remove (task);
+  }
+
+  /**
+    Sets the time allowed for all flush tasks to finish.
+
+    @param millis The deadline, in milliseconds.
+   */
+  public void setDeadline (long millis) {
+    deadlineMillis = millis;
+  }
+
+  /**
+    Returns the time allowed for all flush tasks to finish.
+
+    @return The deadline, in milliseconds.
+   */
+  public long getDeadline () {
+    return deadlineMillis;
+  }
+
+  /**
+    Run every registered task in parallel, and wait for them to finish, 
+    but no longer than the deadline. Tasks still running at the deadline
+    are left to finish on their own, if they can, before the JVM exits.
+
+    @return True if every task finished, without throwing an exception,
+            before the deadline.
+   */
+  public boolean flush () {
+    long registered = registrations.get();
+    ArrayList<Map.Entry<Runnable, String>> toRun 
+        = new ArrayList<Map.Entry<Runnable, String>> (tasks.entrySet());
+    synchronized (weakTasks) {
+      for (Map.Entry<Runnable, String> task : weakTasks.entrySet()) {
+        toRun.add (new AbstractMap.SimpleImmutableEntry<Runnable, String> 
+            (task.getKey(), task.getValue()));
+      }
+    }
+    if (toRun.isEmpty()) {
+      unfinished = Collections.emptyList();
+      cleanAt = registered;
+      return true;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool 
+        (Math.min (toRun.size(), MAX_THREADS), 
+        new XThreadFactory ("xos2-shutdown"));
+    ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+    try {
+      for (Map.Entry<Runnable, String> task : toRun) {
+        futures.add (executor.submit (task.getKey()));
+      }
+    } finally {
+      executor.shutdown();
+    }
+    long deadline = System.nanoTime() 
+        + TimeUnit.MILLISECONDS.toNanos (deadlineMillis);
+    ArrayList<String> late = new ArrayList<String>();
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        futures.get (i).get 
+            (Math.max (0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (ExecutionException e) {
+        late.add (toRun.get (i).getValue());
+      } catch (TimeoutException e) {
+        late.add (toRun.get (i).getValue());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        late.add (toRun.get (i).getValue());
+      }
+    }
+    unfinished = Collections.unmodifiableList (late);
+    cleanAt = (late.isEmpty() ? registered : -1);
+    return late.isEmpty();
+  } // end method flush
+
+  /**
+    Returns the names of the tasks that failed, or were still running at
+    the deadline, during the last flush.
+
+    @return The names of the unfinished tasks.
+   */
+  public List<String> getUnfinished () {
+    return unfinished;
+  }
+
+} // end class XShutdownCoordinator
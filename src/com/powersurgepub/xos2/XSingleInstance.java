@@ -0,0 +1,446 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.net.*;
+  import java.nio.channels.*;
+  import java.nio.file.*;
+  import java.nio.file.attribute.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+
+/**
+  Keeps a program to a single running instance per user. The first instance
+  listens on a Unix domain socket, named after the program's preferences
+  path. Later launches of the program connect to that socket, pass along
+  their command line arguments, and can then exit at once, without ever
+  initializing XOS or creating a window. <p>
+
+  Each argument forwarded is passed to the running instance's XHandler:
+  arguments that look like URIs (a scheme of two or more characters,
+  followed by a colon) to handleOpenURI, and all others together to 
+  handleOpenFiles, as files relative to the directory from which the later 
+  launch was made. Requests that arrive before the running instance has an 
+  XHandler are held until one is set. <p>
+
+  A launch that connects, but doesn't send its arguments within 
+  TIMEOUT_MILLIS, is dropped, without holding up any other launch. A later
+  launch that gets no acknowledgement from the running instance in that 
+  time fails, rather than taking the running instance's place; only a 
+  socket that refuses connections, left behind by a crash, is replaced. <p>
+
+  Following is typical code that would be used to access XSingleInstance. <p>
+
+  <pre><code>
+    public static void main (String[] args) {
+      XOS xos = XOS.getShared();
+      xos.setDomainLevel1 ("powersurgepub");
+      xos.setDomainLevel2 ("com");
+      xos.setProgramName ("Two Due");
+      if (! xos.startSingleInstance (args)) {
+        System.exit (0);
+      }
+      ...
+    }
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XSingleInstance {
+
+  /** Identifies a forwarded file. */
+  private static final byte     FILE                = 'F';
+
+  /** Identifies a forwarded URI. */
+  private static final byte     URI_REQUEST         = 'U';
+
+  /** Sent back once forwarded arguments have been received. */
+  private static final byte     ACKNOWLEDGED        = 'A';
+
+  /** The longest socket path that all platforms will accept. */
+  private static final int      MAX_PATH_LENGTH     = 100;
+
+  private static final int      MAX_ATTEMPTS        = 3;
+
+  /** 
+    How long either end will wait for the other to send what it should, 
+    in milliseconds, before giving up on the connection. 
+   */
+  public  static final int      TIMEOUT_MILLIS      = 5000;
+
+  /** The most launches whose arguments are received at once. */
+  private static final int      MAX_RECEIVERS       = 4;
+
+  /** The most launches waiting to have their arguments received. */
+  private static final int      MAX_WAITING         = 16;
+
+  /** Closes connections that have run out of time. */
+  private static ScheduledThreadPoolExecutor  timer = null;
+
+  private  XOS                  xos;
+  private  Path                 socketPath;
+  private  ServerSocketChannel  server              = null;
+  private  ExecutorService      listener            = null;
+  private  ThreadPoolExecutor   receivers           = null;
+
+  /** Requests received before there was an XHandler to pass them to. */
+  private  ArrayList<Request>   pending             = new ArrayList<Request>();
+
+  /**
+    Creates a single instance guard for the program identified by an XOS
+    context's preferences path. The domain and program names must already 
+    have been set.
+
+    @param xos The XOS context for the program.
+   */
+  public XSingleInstance (XOS xos) {
+    this.xos = xos;
+    String name = "xos2-" + System.getProperty ("user.name", "user")
+        + xos.getPreferencesPath().replace ('/', '.') + ".sock";
+    Path tempDir = Paths.get (System.getProperty ("java.io.tmpdir"));
+    socketPath = tempDir.resolve (name);
+    if (socketPath.toString().length() > MAX_PATH_LENGTH) {
+      socketPath = tempDir.resolve ("xos2-" 
+          + Integer.toHexString (name.hashCode()) + ".sock");
+    }
+  }
+
+  /**
+    Returns the path of the socket used by the running instance.
+
+    @return The socket path.
+   */
+  public Path getSocketPath () {
+    return socketPath;
+  }
+
+  /**
+    Become the running instance, or else pass the arguments along to the
+    instance that's already running.
+
+    @return True if this is now the running instance, and should carry on;
+            false if the arguments were passed to another instance, and
+            this one should exit.
+    @param  args The program's command line arguments.
+    @throws IOException If it was not possible either to listen on the
+                        socket, or to pass along the arguments.
+   */
+  public boolean start (String[] args)
+      throws IOException {
+    IOException trouble = null;
+    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+      SocketChannel channel = null;
+      try {
+        channel = SocketChannel.open (UnixDomainSocketAddress.of (socketPath));
+      } catch (ConnectException e) {
+        // A stale socket, left behind by an instance that crashed
+        trouble = e;
+        Files.deleteIfExists (socketPath);
+      } catch (SocketException e) {
+        if (Files.exists (socketPath, LinkOption.NOFOLLOW_LINKS)) {
+          throw e;
+        }
+        // Nobody has listened here yet
+        trouble = e;
+      }
+      if (channel != null) {
+        // Trouble from here on is not a reason to take over the socket
+        forward (channel, args);
+        return false;
+      }
+      try {
+        listen();
+        return true;
+      } catch (IOException e) {
+        // Another instance may have started at the same moment, so try again
+        trouble = e;
+      }
+    }
+    throw trouble;
+  } // end method start
+
+  /**
+    Pass the arguments to the running instance, and wait for it to
+    acknowledge them.
+   */
+  private void forward (SocketChannel channel, String[] args)
+      throws IOException {
+    ScheduledFuture<?> deadline = closeAfterTimeout (channel);
+    try {
+      DataOutputStream out = new DataOutputStream 
+          (new BufferedOutputStream (Channels.newOutputStream (channel)));
+      out.writeInt (args.length);
+      for (String arg : args) {
+        if (isURI (arg)) {
+          out.writeByte (URI_REQUEST);
+          out.writeUTF (arg);
+        } else {
+          out.writeByte (FILE);
+          out.writeUTF (new File (arg).getAbsolutePath());
+        }
+      }
+      out.flush();
+      InputStream in = Channels.newInputStream (channel);
+      if (in.read() != ACKNOWLEDGED) {
+        throw new IOException ("Running instance did not acknowledge request");
+      }
+    } catch (AsynchronousCloseException e) {
+      throw new InterruptedIOException 
+          ("Running instance did not respond in time");
+    } finally {
+      deadline.cancel (false);
+      channel.close();
+    }
+  } // end method forward
+
+  /**
+    Close a connection once it has been open too long, so that a read or 
+    write that would otherwise wait for ever fails instead.
+
+    @return The scheduled close, to be cancelled if it isn't needed.
+   */
+  private static ScheduledFuture<?> closeAfterTimeout 
+      (final SocketChannel channel) {
+    synchronized (XSingleInstance.class) {
+      if (timer == null) {
+        timer = new ScheduledThreadPoolExecutor 
+            (1, new XThreadFactory ("xos2-single-instance-timer"));
+        timer.setRemoveOnCancelPolicy (true);
+        timer.setKeepAliveTime (TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        timer.allowCoreThreadTimeOut (true);
+      }
+    }
+    return timer.schedule (new Runnable() {
+      public void run() {
+        try {
+          channel.close();
+        } catch (IOException e) {
+          // Closing anyway
+        }
+      }
+    }, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  private static boolean isURI (String arg) {
+    int colon = arg.indexOf (':');
+    if (colon < 2) {
+      return false;
+    }
+    for (int i = 0; i < colon; i++) {
+      char c = arg.charAt (i);
+      if (! (Character.isLetterOrDigit (c) || c == '+' || c == '-' || c == '.')) {
+        return false;
+      }
+    }
+    return Character.isLetter (arg.charAt (0));
+  }
+
+  /**
+    Bind to the socket and start accepting requests.
+   */
+  private void listen ()
+      throws IOException {
+    server = ServerSocketChannel.open (StandardProtocolFamily.UNIX);
+    try {
+      server.bind (UnixDomainSocketAddress.of (socketPath));
+    } catch (IOException e) {
+      server.close();
+      server = null;
+      throw e;
+    }
+    try {
+      Files.setPosixFilePermissions 
+          (socketPath, PosixFilePermissions.fromString ("rw-------"));
+    } catch (UnsupportedOperationException e) {
+      // Not a POSIX file system
+    }
+    socketPath.toFile().deleteOnExit();
+    receivers = new ThreadPoolExecutor (MAX_RECEIVERS, MAX_RECEIVERS, 
+        30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable> (MAX_WAITING),
+        new XThreadFactory ("xos2-single-instance-receive"));
+    receivers.allowCoreThreadTimeOut (true);
+    listener = Executors.newSingleThreadExecutor 
+        (new XThreadFactory ("xos2-single-instance"));
+    listener.execute (new Runnable() {
+      public void run() {
+        accept();
+      }
+    });
+  } // end method listen
+
+  /**
+    Accept each connection, and hand it to a receiver, so that a launch 
+    that is slow to send its arguments doesn't hold up any others.
+   */
+  private void accept () {
+    while (server.isOpen()) {
+      final SocketChannel channel;
+      try {
+        channel = server.accept();
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        // Trouble with one launch shouldn't stop us listening for others
+        continue;
+      }
+      try {
+        receivers.execute (new Runnable() {
+          public void run() {
+            receive (channel);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // Too many launches at once, or stopping
+        try {
+          channel.close();
+        } catch (IOException e2) {
+          // Closing anyway
+        }
+      }
+    }
+  } // end method accept
+
+  /**
+    Receive the arguments from one launch, giving up if they don't all 
+    arrive in time.
+   */
+  private void receive (SocketChannel channel) {
+    ScheduledFuture<?> deadline = closeAfterTimeout (channel);
+    try {
+      read (channel);
+    } catch (IOException e) {
+      // Trouble with one launch shouldn't stop us listening for others
+    } finally {
+      deadline.cancel (false);
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // Closing anyway
+      }
+    }
+  }
+
+  private void read (SocketChannel channel)
+      throws IOException {
+    DataInputStream in = new DataInputStream 
+        (new BufferedInputStream (Channels.newInputStream (channel)));
+    int count = in.readInt();
+    ArrayList<Request> requests = new ArrayList<Request>();
+    ArrayList<File> files = new ArrayList<File>();
+    for (int i = 0; i < count; i++) {
+      byte kind = in.readByte();
+      String value = in.readUTF();
+      if (kind == URI_REQUEST) {
+        try {
+          requests.add (new Request (new URI (value), null));
+        } catch (URISyntaxException e) {
+          // Skip anything we can't make sense of
+        }
+      } else {
+        files.add (new File (value));
+      }
+    }
+    if (! files.isEmpty()) {
+      requests.add (new Request (null, files));
+    }
+    OutputStream out = Channels.newOutputStream (channel);
+    out.write (ACKNOWLEDGED);
+    out.flush();
+    for (Request request : requests) {
+      dispatch (request);
+    }
+  } // end method read
+
+  /**
+    Pass a request to the XHandler, or hold it if there isn't one yet.
+   */
+  private void dispatch (final Request request) {
+    synchronized (pending) {
+      if (! xos.hasXHandler()) {
+        pending.add (request);
+        return;
+      }
+    }
+    Runnable delivery = new Runnable() {
+      public void run() {
+        if (request.uri != null) {
+          xos.handleOpenURI (request.uri);
+        } else {
+          xos.handleOpenFiles (request.files);
+        }
+      }
+    };
+    if (XOS.isHeadless()) {
+      delivery.run();
+    } else {
+      java.awt.EventQueue.invokeLater (delivery);
+    }
+  }
+
+  /**
+    Pass along any requests that were held until an XHandler was set.
+   */
+  void handlerReady () {
+    ArrayList<Request> held;
+    synchronized (pending) {
+      held = new ArrayList<Request> (pending);
+      pending.clear();
+    }
+    for (Request request : held) {
+      dispatch (request);
+    }
+  }
+
+  /**
+    Stop listening, and remove the socket, so that the next launch of the
+    program will become the running instance.
+   */
+  public void stop () {
+    if (server == null) {
+      return;
+    }
+    try {
+      server.close();
+    } catch (IOException e) {
+      // Closing anyway
+    }
+    listener.shutdown();
+    receivers.shutdown();
+    try {
+      Files.deleteIfExists (socketPath);
+    } catch (IOException e) {
+      // Nothing more we can do
+    }
+  }
+
+  /**
+    A URI, or a group of files, forwarded by a later launch.
+   */
+  private static class Request {
+
+    final URI           uri;
+    final List<File>    files;
+
+    Request (URI uri, List<File> files) {
+      this.uri = uri;
+      this.files = files;
+    }
+
+  } // end class Request
+
+} // end class XSingleInstance
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.util.concurrent.*;
+  import java.util.function.*;
+
+/**
+  Runs the phases of XOS initialization. Phases that don't depend on one
+  another are run in parallel on background threads, so that the caller
+  need only wait for the phases required before the first window can be
+  shown. The background threads are released once every phase submitted
+  has finished. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+class XStartup {
+
+  /** Locating the user and system preference nodes. */
+  static final String   PREFS                   = "prefs";
+
+  /** Loading and instantiating the preferred look and feel. */
+  static final String   LOOK_AND_FEEL_PRELOAD   = "laf-preload";
+
+  /** Installing the look and feel with the UIManager. */
+  static final String   LOOK_AND_FEEL_INSTALL   = "laf-install";
+
+  /** Loading the font system, so the first window can lay out quickly. */
+  static final String   FONT_PRELOAD            = "font-preload";
+
+  /** Setting system properties used by the Mac look and feel. */
+  static final String   MAC_PROPERTIES          = "mac-properties";
+
+  /** Bringing the Info.plist file in line with the user's preferences. */
+  static final String   INFO_PLIST              = "info-plist";
+
+  /** Detecting the operating system, when XOS is constructed. */
+  static final String   OS_DETECTION            = "os-detection";
+
+  /** The whole of XOS.initialize, up until it returns. */
+  static final String   INITIALIZE              = "initialize";
+
+  /** Installing the handler for platform events. */
+  static final String   SET_XHANDLER            = "set-xhandler";
+
+  /** Constructing the first JFileChooser used by an XFileChooser. */
+  static final String   FIRST_FILE_CHOOSER      = "first-file-chooser";
+
+  /** Building a JFileChooser in the background, ready for first use. */
+  static final String   FILE_CHOOSER_PREWARM    = "file-chooser-prewarm";
+
+  /** Determining the preferred line separator. */
+  static final String   LINE_SEPARATOR          = "line-separator";
+
+  private static final int  THREADS             = 3;
+
+  private  ExecutorService  executor;
+  private  XStartupTimer    timer;
+
+  /**
+    Prepare to run startup phases.
+
+    @param timer The timer used to record how long each phase takes.
+   */
+  XStartup (XStartupTimer timer) {
+    this.timer = timer;
+    executor = Executors.newFixedThreadPool
+        (THREADS, new XThreadFactory ("xos2-startup"));
+  }
+
+  /**
+    Run a phase on a background thread.
+
+    @return A future that completes when the phase is finished.
+    @param  name  The name of the phase.
+    @param  phase The work to be done.
+   */
+  CompletableFuture<Void> runPhase (final String name, final Runnable phase) {
+    return CompletableFuture.runAsync (timer.timed (name, phase), executor);
+  }
+
+  /**
+    Run a phase on a background thread, once another phase has finished.
+
+    @return A future that completes with the result of the phase.
+    @param  name   The name of the phase.
+    @param  after  The phase that must finish first.
+    @param  phase  The work to be done.
+   */
+  <T> CompletableFuture<T> supplyPhase
+      (final String name, CompletableFuture<?> after, final Supplier<T> phase) {
+    return after.thenApplyAsync (new Function<Object, T>() {
+      public T apply (Object ignored) {
+        XStartupTimer.Phase timed = timer.begin (name);
+        try {
+          return phase.get();
+        } finally {
+          timer.end (timed);
+        }
+      }
+    }, executor);
+  }
+
+  /**
+    Run a phase on the calling thread.
+
+    @param  name  The name of the phase.
+    @param  phase The work to be done.
+   */
+  void runInline (String name, Runnable phase) {
+    timer.time (name, phase);
+  }
+
+  /**
+    Wait for a background phase to finish, passing along any unchecked
+    exception thrown by the phase.
+
+    @return The result of the phase.
+    @param  future The phase to wait for.
+   */
+  static <T> T await (CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+    Indicate that no more phases will be submitted, and release the
+    background threads once the passed phases are finished.
+
+    @return A future that completes when all of the passed phases are
+            finished, whether or not they succeeded.
+    @param  phases All of the phases submitted.
+   */
+  CompletableFuture<Void> finish (CompletableFuture<?>... phases) {
+    CompletableFuture<Void> all = CompletableFuture.allOf (phases);
+    return all.handle (new BiFunction<Void, Throwable, Void>() {
+      public Void apply (Void ignored, Throwable t) {
+        executor.shutdown();
+        return null;
+      }
+    });
+  }
+
+} // end class XStartup
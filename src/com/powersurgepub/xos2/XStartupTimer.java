@@ -0,0 +1,242 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.util.*;
+
+/**
+  Records how long each phase of program startup takes. XOS times its own
+  startup steps (operating system detection, initialization phases, handler
+  installation and the first file chooser), and programs may time their own
+  phases as well. <p>
+
+  Each phase is recorded for later reporting, and, when the flight 
+  recorder is running, is also emitted as a Java Flight Recorder event, 
+  so that startup may be examined in a flight recording alongside 
+  everything else the JVM was doing. <p>
+
+  Following is typical code that would be used to access XStartupTimer. <p>
+
+  <pre><code>
+    XStartupTimer timer = xos.getStartupTimer();
+    XStartupTimer.Phase phase = timer.begin ("load-library");
+    loadLibrary();
+    timer.end (phase);
+    ...
+    System.out.println (timer.getReport());
+  </code></pre>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XStartupTimer {
+
+  /** Whether flight recorder events can be emitted in this JVM. */
+  private  static volatile boolean  flightRecorder    = true;
+
+  /** When this timer was created; phase start times are relative to this. */
+  private  final        long        origin            = System.nanoTime();
+
+  private  final        ArrayList<Phase> phases       = new ArrayList<Phase>();
+
+  /**
+    Creates a new timer. Phase start times will be reported relative to the
+    moment the timer was created.
+   */
+  public XStartupTimer () {
+
+  }
+
+  /**
+    Note the beginning of a phase.
+
+    @return The phase begun, to be passed to end when the phase is done.
+    @param  name The name of the phase.
+   */
+  public Phase begin (String name) {
+    Phase phase = new Phase (name, Thread.currentThread().getName(), 
+        System.nanoTime() - origin);
+    if (flightRecorder) {
+      try {
+        // Loading an event class is costly, so don't unless recording
+        if (jdk.jfr.FlightRecorder.isInitialized()) {
+          phase.flightEvent = XPhaseEvent.begin (name);
+        }
+      } catch (LinkageError e) {
+        // The jdk.jfr module is not present in this runtime
+        flightRecorder = false;
+      }
+    }
+    return phase;
+  }
+
+  /**
+    Note the end of a phase, and record it.
+
+    @param phase The phase returned by begin.
+   */
+  public void end (Phase phase) {
+    phase.durationNanos = System.nanoTime() - origin - phase.startNanos;
+    synchronized (phases) {
+      phases.add (phase);
+    }
+    if (phase.flightEvent != null) {
+      XPhaseEvent.end (phase.flightEvent);
+      phase.flightEvent = null;
+    }
+  }
+
+  /**
+    Run some work as a named phase.
+
+    @param name The name of the phase.
+    @param work The work to be done.
+   */
+  public void time (String name, Runnable work) {
+    Phase phase = begin (name);
+    try {
+      work.run();
+    } finally {
+      end (phase);
+    }
+  }
+
+  /**
+    Wrap some work, so that it will be timed as a named phase whenever it
+    is run.
+
+    @return A Runnable that times the passed work.
+    @param name The name of the phase.
+    @param work The work to be done.
+   */
+  public Runnable timed (final String name, final Runnable work) {
+    return new Runnable() {
+      public void run() {
+        time (name, work);
+      }
+    };
+  }
+
+  /**
+    Returns all phases recorded so far, ordered by start time.
+
+    @return A list of the finished phases.
+   */
+  public List<Phase> getPhases () {
+    ArrayList<Phase> sorted;
+    synchronized (phases) {
+      sorted = new ArrayList<Phase> (phases);
+    }
+    Collections.sort (sorted, new Comparator<Phase>() {
+      public int compare (Phase a, Phase b) {
+        return Long.compare (a.startNanos, b.startNanos);
+      }
+    });
+    return sorted;
+  }
+
+  /**
+    Returns the total time spent in phases with the given name.
+
+    @return Total milliseconds spent in the named phase, or zero if the
+            phase has not been recorded.
+    @param name The name of the phase.
+   */
+  public double getMillis (String name) {
+    long total = 0;
+    synchronized (phases) {
+      for (Phase phase : phases) {
+        if (phase.name.equals (name)) {
+          total = total + phase.durationNanos;
+        }
+      }
+    }
+    return total / 1000000.0;
+  }
+
+  /**
+    Returns a human-readable report of all phases recorded so far, one per
+    line, showing the start time and duration in milliseconds, the phase
+    name and the thread on which it ran.
+
+    @return The report.
+   */
+  public String getReport () {
+    StringBuilder report = new StringBuilder();
+    String lineSep = XOS.LINE_SEP_STRING_UNIX;
+    report.append (String.format
+        ("%10s %10s  %-24s %s", "start ms", "ms", "phase", "thread"));
+    report.append (lineSep);
+    for (Phase phase : getPhases()) {
+      report.append (String.format ("%10.1f %10.1f  %-24s %s",
+          phase.getStartMillis(), phase.getMillis(),
+          phase.name, phase.threadName));
+      report.append (lineSep);
+    }
+    return report.toString();
+  }
+
+  /**
+    One timed phase of startup.
+   */
+  public static class Phase {
+
+    private  String   name;
+    private  String   threadName;
+    private  long     startNanos;
+    private  long     durationNanos     = -1;
+    private  Object   flightEvent       = null;
+
+    Phase (String name, String threadName, long startNanos) {
+      this.name = name;
+      this.threadName = threadName;
+      this.startNanos = startNanos;
+    }
+
+    public String getName () {
+      return name;
+    }
+
+    /**
+      Returns the name of the thread on which the phase began.
+     */
+    public String getThreadName () {
+      return threadName;
+    }
+
+    /**
+      Returns the start of the phase, in milliseconds after the timer was
+      created.
+     */
+    public double getStartMillis () {
+      return startNanos / 1000000.0;
+    }
+
+    /**
+      Returns the duration of the phase in milliseconds, or a negative number
+      if the phase has not yet ended.
+     */
+    public double getMillis () {
+      return durationNanos / 1000000.0;
+    }
+
+    public String toString () {
+      return name + " " + String.format ("%.1f", getMillis()) + " ms";
+    }
+
+  } // end inner class Phase
+
+} // end class XStartupTimer
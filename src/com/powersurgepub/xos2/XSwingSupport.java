@@ -0,0 +1,113 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.awt.*;
+  import java.awt.event.*;
+  import javax.swing.*;
+
+/**
+  The parts of XOS that wire up windows and menus. These are kept out of 
+  XOS itself, so that a program running headless can use XOS without 
+  causing any AWT or Swing listener classes to be loaded when XOS is. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+class XSwingSupport {
+
+  private XSwingSupport () {
+  }
+
+  /**
+    Have the closing of the passed window treated as a request to quit.
+
+    @param window The program's main window.
+    @param xos    The XOS context that will handle the quit.
+   */
+  static void quitOnClose (JFrame window, final XOS xos) {
+    window.addWindowListener (new WindowAdapter()
+      {
+        public void windowClosing (WindowEvent e) {
+          xos.handleQuit();
+        } // end WindowClosing
+      } // end window listener 
+    );
+  }
+
+  /**
+    Add an Exit item to the passed menu.
+
+    @return The Exit menu item.
+    @param  fileMenu The menu acting as the File menu.
+    @param  xos      The XOS context that will handle the quit.
+   */
+  static JMenuItem addExitItem (JMenu fileMenu, final XOS xos) {
+    JMenuItem exitItem = new JMenuItem();
+    exitItem.setText ("Exit");
+    setShortcut (exitItem, KeyEvent.VK_Q);
+    exitItem.addActionListener (new ActionListener() {
+      public void actionPerformed (ActionEvent evt) {
+        xos.handleQuit();
+      }
+    });
+    fileMenu.add (exitItem);
+    return exitItem;
+  }
+
+  /**
+    Add a separator and an About item to the passed menu.
+
+    @return The About menu item.
+    @param  helpMenu    The menu acting as the Help menu.
+    @param  programName The name of the program, as shown to the user.
+    @param  xos         The XOS context that will handle the request.
+   */
+  static JMenuItem addAboutItem 
+      (JMenu helpMenu, String programName, final XOS xos) {
+    JMenuItem aboutItem = new JMenuItem();
+    aboutItem.setText ("About " + programName);
+    aboutItem.addActionListener (new ActionListener() {
+      public void actionPerformed (ActionEvent evt) {
+        xos.handleAbout();
+      }
+    });
+    helpMenu.addSeparator();
+    helpMenu.add (aboutItem);
+    return aboutItem;
+  }
+
+  /**
+    Use the platform's menu shortcut key, together with the passed key,
+    as the accelerator for a menu item.
+
+    @param item    The menu item.
+    @param keyCode The key, as one of the KeyEvent.VK_ constants.
+   */
+  static void setShortcut (JMenuItem item, int keyCode) {
+    item.setAccelerator (KeyStroke.getKeyStroke (keyCode,
+        Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
+  }
+
+  /**
+    Load the font system, so that the first window can lay out quickly.
+   */
+  static void preloadFonts () {
+    GraphicsEnvironment.getLocalGraphicsEnvironment()
+        .getAvailableFontFamilyNames();
+  }
+
+} // end class XSwingSupport
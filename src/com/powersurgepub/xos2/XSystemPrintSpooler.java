@@ -0,0 +1,65 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import javax.print.*;
+  import javax.print.attribute.*;
+  import javax.print.attribute.standard.*;
+
+/**
+  A spooler that sends documents to a print service of the platform, by 
+  default whichever one is the default at the moment each job is sent. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XSystemPrintSpooler 
+    implements XPrintSpooler {
+
+  private  PrintService   service;
+
+  /**
+    Creates a spooler for the platform's default print service.
+   */
+  public XSystemPrintSpooler () {
+    this (null);
+  }
+
+  /**
+    Creates a spooler for a particular print service.
+
+    @param service The print service to use, or null to use the default
+                   print service.
+   */
+  public XSystemPrintSpooler (PrintService service) {
+    this.service = service;
+  }
+
+  public void submit (String jobName, Doc doc)
+      throws PrintException {
+    PrintService target = service;
+    if (target == null) {
+      target = PrintServiceLookup.lookupDefaultPrintService();
+    }
+    if (target == null) {
+      throw new PrintException ("No print service available");
+    }
+    PrintRequestAttributeSet attributes = new HashPrintRequestAttributeSet();
+    attributes.add (new JobName (jobName, null));
+    target.createPrintJob().print (doc, attributes);
+  }
+
+} // end class XSystemPrintSpooler
@@ -18,13 +18,15 @@ package com.powersurgepub.xos2;
 
   import java.io.*;
   import java.net.*;
+  import java.util.*;
 
 /**
    A text file that can be opened for input or output, read from
    or written to, and closed, that will work respectably on any Java
    platform. Use of this class offers two special features. First, it will
    automatically set the file type and creator on a Mac to values typical of
-   a standard text file, making an output file easier to open on a Mac. This 
+   a standard text file, making an output file easier to open on a Mac. (This
+   is done in the background, once the file is closed; see XFileTagger.) This 
    class will also respect a specified user preference for a particular style
    of line ending to be used on an output file. <p>
  
@@ -79,7 +81,7 @@ public class XTextFile
       = XOS.LINE_SEP_PLATFORM_DOS;
       
   /** A shared instance of XOS for cross-platform support. */
-  private  XOS          xos;
+  private  XOS          xos = null;
   
   /** The name of this file, without any path info. */
   private  String       fileName;
@@ -111,6 +113,12 @@ public class XTextFile
   /** The buffered writer used for output. */
   private  BufferedWriter textFileBufWriter;
   
+  /** The line separator written after each line, fixed when opened. */
+  private  XLineSeparator lineSeparator;
+  
+  /** Flushes output if the program quits while the file is open. */
+  private  Runnable     flushTask = null;
+  
   /** 
      The sequentially assigned line number of the last record
      read or written.
@@ -208,9 +216,29 @@ public class XTextFile
   private void initialize () {
     lineNumber = 0;
     atEnd = false;
-    xos = XOS.getShared();
+  }
+  
+  /**
+     Returns the XOS context whose preferences are followed, obtaining the 
+     shared context the first time it is needed.
+   */
+  private XOS getXOS () {
+    if (xos == null) {
+      xos = XOS.getShared();
+    }
+    return xos;
   }
 
+  /**
+     Use the line separator preference of a particular XOS context, rather
+     than that of the shared default context.
+    
+     @param xos The XOS context whose preferences should be followed.
+   */
+  public void setXOS (XOS xos) {
+    this.xos = xos;
+  }
+  
   /**
      Returns the next line from the text file. <p>
      
@@ -295,6 +323,87 @@ public class XTextFile
   public boolean isAtEnd() {
     return atEnd;
   }
+
+  /**
+     Reads no more than the first few lines of the file, without opening it
+     for input in the usual sense, and without reading any further into the
+     file than the limits allow, however long its lines may be. Local files
+     are decoded with the character set found by the shared XContentSniffer;
+     URLs with the platform's default. Any byte order mark is dropped. A
+     local file that the sniffer finds is not text yields no lines. <p>
+
+     The reading thread's interrupt status is checked as each block is read,
+     so that a read no longer wanted can be abandoned promptly.
+
+     @return The lines read, without their line endings. There will be fewer
+             than requested if the file ends first, and the last line may be
+             cut short by the character limit.
+     @param  maxLines The most lines to return.
+     @param  maxChars The most characters to read, in total.
+     @throws FileNotFoundException If the file cannot be found.
+     @throws InterruptedIOException If the thread was interrupted.
+     @throws IOException If read failure.
+   */
+  public List<String> readHead (int maxLines, int maxChars)
+      throws FileNotFoundException, IOException {
+    Reader reader;
+    if (isURL) {
+      reader = new InputStreamReader (url.openStream());
+    } else {
+      XContentSniffer.Content content = XOS.getContentSniffer().sniff (this);
+      if (! content.isText()) {
+        return new ArrayList<String>();
+      }
+      reader = new InputStreamReader 
+          (new FileInputStream (this), content.getCharset());
+    }
+    ArrayList<String> lines = new ArrayList<String>();
+    StringBuilder current = new StringBuilder();
+    char[] block = new char [Math.max (1, Math.min (maxChars, 4096))];
+    int remaining = maxChars;
+    boolean first = true;
+    boolean afterCR = false;
+    try {
+      while (lines.size() < maxLines && remaining > 0) {
+        if (Thread.interrupted()) {
+          throw new InterruptedIOException 
+              ("Read of " + toString() + " interrupted");
+        }
+        int count = reader.read (block, 0, Math.min (block.length, remaining));
+        if (count < 0) {
+          break;
+        }
+        remaining = remaining - count;
+        for (int i = 0; i < count && lines.size() < maxLines; i++) {
+          char c = block [i];
+          if (first) {
+            first = false;
+            if (c == '\uFEFF') {
+              continue;
+            }
+          }
+          if (c == '\n' && afterCR) {
+            afterCR = false;
+          } 
+          else
+          if (c == '\r' || c == '\n') {
+            afterCR = (c == '\r');
+            lines.add (current.toString());
+            current.setLength (0);
+          } else {
+            afterCR = false;
+            current.append (c);
+          }
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    if (current.length() > 0 && lines.size() < maxLines) {
+      lines.add (current.toString());
+    }
+    return lines;
+  } // end method readHead
   
   /**
      Writes a String to the text file. If the text file has not yet 
@@ -334,8 +443,7 @@ public class XTextFile
     }
     if (openAsOutput) {
       textFileBufWriter.write(line, 0, line.length());
-      String lineSep = xos.getLineSep();
-      textFileBufWriter.write (lineSep, 0, lineSep.length());
+      lineSeparator.writeTo (textFileBufWriter);
       lineNumber++;
     } // end if openAsOutput
     return;
@@ -370,8 +478,21 @@ public class XTextFile
         // System.out.println ("mkdirs result = " + String.valueOf (ok));
       }
     }
+    lineSeparator = getXOS().getLineSeparator();
     textFileWriter = new FileWriter (this);
     textFileBufWriter = new BufferedWriter (textFileWriter);
+    final BufferedWriter writer = textFileBufWriter;
+    flushTask = new Runnable() {
+      public void run() {
+        try {
+          writer.flush();
+        } catch (IOException e) {
+          throw new UncheckedIOException (e);
+        }
+      }
+    };
+    getXOS().getShutdownCoordinator().addWeakFlushTask 
+        (toString(), flushTask);
     openAsOutput = true;
   } // end method openForOutput
   
@@ -386,10 +507,12 @@ public class XTextFile
       textFileBufReader.close ();
     }
     if (openAsOutput) {
+      getXOS().getShutdownCoordinator().removeFlushTask (flushTask);
+      flushTask = null;
       textFileBufWriter.close();
       
       String mrjv = System.getProperty("mrj.version");
-      xos.designateAsTextFile (this);
+      getXOS().designateAsTextFileLater (this);
     }
     if (openAsInput) {
       openAsInput = false;
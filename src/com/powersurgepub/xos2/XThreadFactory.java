@@ -0,0 +1,52 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.util.concurrent.*;
+  import java.util.concurrent.atomic.*;
+
+/**
+  A factory for the background threads used by xos2. The threads are
+  daemon threads, so that they never keep the application from exiting,
+  and are given recognizable names, so that they can be identified in a
+  thread dump. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+class XThreadFactory 
+    implements ThreadFactory {
+
+  private  String         prefix;
+  private  AtomicInteger  count     = new AtomicInteger();
+
+  /**
+    Creates a new thread factory.
+
+    @param prefix The beginning of each thread name; a sequence number
+                  will be appended.
+   */
+  XThreadFactory (String prefix) {
+    this.prefix = prefix;
+  }
+
+  public Thread newThread (Runnable r) {
+    Thread thread = new Thread (r, prefix + "-" + count.incrementAndGet());
+    thread.setDaemon (true);
+    return thread;
+  }
+
+} // end class XThreadFactory
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.xos2;
+
+  import java.net.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+
+/**
+  Passes URIs delivered to the application along to the XHandler, so that
+  each distinct URI is handled once, however many times it arrives in a 
+  burst. <p>
+
+  URIs are queued and delivered, in order of arrival, by a background 
+  thread. A URI that is already waiting in the queue is not queued again,
+  and a URI that arrives within the coalescing window of the last arrival
+  of the same URI is dropped, once it has been delivered. The window 
+  slides, so that a URI arriving repeatedly is delivered only once, until
+  it has not been seen for the length of the window. The queue is bounded;
+  when it is full, the oldest waiting URI is dropped to make room, and 
+  will be accepted if it arrives again. <p>
+
+  Delivery goes through the XOS context's callback executor, so the 
+  handler runs on the thread chosen for OPEN_URI callbacks. Under the 
+  default CALLER policy that is the event dispatch thread, where the 
+  platform delivers URIs, rather than this dispatcher's background 
+  thread. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XURIDispatcher {
+
+  /** The default length of the coalescing window, in milliseconds. */
+  public  static final long     DEFAULT_WINDOW_MILLIS = 500;
+
+  /** The default maximum number of URIs waiting to be delivered. */
+  public  static final int      DEFAULT_CAPACITY      = 64;
+
+  private final XOS             xos;
+  private final ExecutorService deliverer;
+
+  private long                  windowNanos 
+      = TimeUnit.MILLISECONDS.toNanos (DEFAULT_WINDOW_MILLIS);
+  private int                   capacity              = DEFAULT_CAPACITY;
+
+  /** URIs waiting to be delivered, oldest first, with when they arrived. */
+  private final LinkedHashMap<URI, Long> queue        
+      = new LinkedHashMap<URI, Long>();
+
+  /** When each URI was last seen, least recently seen first. */
+  private final LinkedHashMap<URI, Long> lastSeen     
+      = new LinkedHashMap<URI, Long>();
+
+  private boolean               delivering            = false;
+
+  private long                  delivered             = 0;
+  private long                  coalesced             = 0;
+  private long                  dropped               = 0;
+
+  /**
+    Creates a dispatcher for an XOS context.
+
+    @param xos The context whose XHandler is to receive the URIs.
+   */
+  XURIDispatcher (XOS xos) {
+    this.xos = xos;
+    deliverer = Executors.newSingleThreadExecutor 
+        (new XThreadFactory ("xos2-uri"));
+  }
+
+  /**
+    Sets the length of the coalescing window.
+
+    @param millis The window, in milliseconds.
+   */
+  public synchronized void setWindow (long millis) {
+    windowNanos = TimeUnit.MILLISECONDS.toNanos (millis);
+  }
+
+  /**
+    Sets the maximum number of URIs waiting to be delivered.
+
+    @param capacity The queue capacity.
+   */
+  public synchronized void setCapacity (int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException ("Capacity must be at least 1");
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+    Accept a URI for delivery, unless it duplicates one waiting or recently
+    seen.
+
+    @return True if the URI was queued for delivery.
+    @param  uri The URI delivered to the application.
+   */
+  public synchronized boolean offer (URI uri) {
+    long now = System.nanoTime();
+    forgetBefore (now - windowNanos);
+    boolean recent = lastSeen.containsKey (uri);
+    lastSeen.remove (uri);
+    lastSeen.put (uri, now);
+    if (recent || queue.containsKey (uri)) {
+      coalesced++;
+      return false;
+    }
+    if (queue.size() >= capacity) {
+      Iterator<URI> oldest = queue.keySet().iterator();
+      // Let a dropped URI through if it arrives again
+      lastSeen.remove (oldest.next());
+      oldest.remove();
+      dropped++;
+    }
+    queue.put (uri, now);
+    if (! delivering) {
+      delivering = true;
+      deliverer.execute (new Runnable() {
+        public void run() {
+          deliver();
+        }
+      });
+    }
+    return true;
+  } // end method offer
+
+  /**
+    Forget URIs last seen before the passed time.
+   */
+  private void forgetBefore (long cutoff) {
+    Iterator<Map.Entry<URI, Long>> entries = lastSeen.entrySet().iterator();
+    while (entries.hasNext()) {
+      if (entries.next().getValue() - cutoff >= 0) {
+        break;
+      }
+      entries.remove();
+    }
+  }
+
+  /**
+    Deliver waiting URIs until there are none left.
+   */
+  private void deliver () {
+    while (true) {
+      Map.Entry<URI, Long> next;
+      synchronized (this) {
+        if (queue.isEmpty()) {
+          delivering = false;
+          return;
+        }
+        Iterator<Map.Entry<URI, Long>> oldest = queue.entrySet().iterator();
+        next = oldest.next();
+        oldest.remove();
+        delivered++;
+      }
+      try {
+        xos.deliverOpenURI (next.getKey(), next.getValue());
+      } catch (RuntimeException e) {
+        // The handler's trouble shouldn't stop later deliveries
+      }
+    }
+  }
+
+  /**
+    Returns the number of URIs passed to the handler.
+
+    @return The number delivered.
+   */
+  public synchronized long getDeliveredCount () {
+    return delivered;
+  }
+
+  /**
+    Returns the number of URIs not queued, because they duplicated one 
+    waiting or recently seen.
+
+    @return The number coalesced.
+   */
+  public synchronized long getCoalescedCount () {
+    return coalesced;
+  }
+
+  /**
+    Returns the number of URIs dropped because the queue was full.
+
+    @return The number dropped.
+   */
+  public synchronized long getDroppedCount () {
+    return dropped;
+  }
+
+} // end class XURIDispatcher
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.file.*;
+  import java.util.*;
+  import java.util.regex.*;
+
+/**
+  Checks that a program running headless can use XOS and XTextFile without
+  loading any AWT or Swing classes. A child JVM is started with 
+  -Djava.awt.headless=true and -verbose:class, runs a typical headless 
+  workload (see Workload), and the classes it reports loading are 
+  searched for any from java.awt, javax.swing or sun.awt. <p>
+
+  Run with the compiled classes of src and test on the class path: <p>
+
+  <pre><code>
+    java -cp classes:test-classes com.powersurgepub.xos2.XHeadlessTest
+  </code></pre>
+
+  The program exits with a status of 1, listing the offending classes, if
+  the check fails. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XHeadlessTest {
+
+  /** Classes that should never be loaded when running headless. */
+  static final Pattern          FORBIDDEN 
+      = Pattern.compile ("\\b((java\\.awt|javax\\.swing|sun\\.awt)\\.\\S+)");
+
+  public static void main (String[] args) 
+      throws Exception {
+    Path dir = Files.createTempDirectory ("xos2-headless");
+    List<String> command = new ArrayList<String>();
+    command.add (System.getProperty ("java.home") + File.separator 
+        + "bin" + File.separator + "java");
+    command.add ("-Djava.awt.headless=true");
+    command.add ("-Djava.util.prefs.userRoot=" + dir.resolve ("prefs"));
+    command.add ("-verbose:class");
+    command.add ("-cp");
+    command.add (System.getProperty ("java.class.path"));
+    command.add (Workload.class.getName());
+    command.add (dir.toString());
+    ProcessBuilder builder = new ProcessBuilder (command);
+    builder.redirectErrorStream (true);
+    Process child = builder.start();
+    Set<String> loaded = new TreeSet<String>();
+    boolean finished = false;
+    BufferedReader reader = new BufferedReader 
+        (new InputStreamReader (child.getInputStream(), "UTF-8"));
+    try {
+      String line = reader.readLine();
+      while (line != null) {
+        Matcher matcher = FORBIDDEN.matcher (line);
+        if (matcher.find()) {
+          loaded.add (matcher.group (1));
+        }
+        if (line.equals (Workload.FINISHED)) {
+          finished = true;
+        }
+        line = reader.readLine();
+      }
+    } finally {
+      reader.close();
+    }
+    int status = child.waitFor();
+    delete (dir.toFile());
+    if (status != 0 || ! finished) {
+      fail ("The headless workload failed, with status " + status);
+    }
+    if (! loaded.isEmpty()) {
+      fail ("Headless use loaded " + loaded.size() + " AWT or Swing classes: "
+          + loaded);
+    }
+    System.out.println ("XHeadlessTest passed");
+  } // end method main
+
+  private static void delete (File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete (child);
+      }
+    }
+    file.delete();
+  }
+
+  private static void fail (String message) {
+    System.out.println ("XHeadlessTest failed: " + message);
+    System.exit (1);
+  }
+
+  /**
+    What a typical headless program does with XOS and XTextFile. 
+   */
+  public static class Workload {
+
+    static final String         FINISHED            = "Workload finished";
+
+    public static void main (String[] args) 
+        throws Exception {
+      File dir = new File (args [0]);
+
+      File file = new File (dir, "headless.txt");
+      XTextFile out = new XTextFile (file);
+      out.openForOutput();
+      out.writeLine ("Two Due");
+      out.close();
+      XTextFile in = new XTextFile (file);
+      in.openForInput();
+      String line = in.readLine();
+      in.close();
+
+      XOS.replaceString (line, "Two", "To");
+      XOS.wordDemarcation (line, "-", 1, 1, -1);
+      new XReplacer ("Two", "To").replace (line);
+
+      XOS xos = XOS.getShared();
+      xos.setDomainLevel1 ("powersurgepub");
+      xos.setProgramName ("XHeadlessTest");
+      xos.initialize();
+      xos.getStartupFuture().get();
+      xos.setPref ("headless", "true");
+      xos.getPref ("headless");
+      xos.getLineSep();
+      xos.setXHandler (xos);
+      xos.designateAsTextFile (file);
+      XOS.getFileTagger().flush();
+
+      System.out.println (FINISHED);
+    }
+
+  } // end class Workload
+
+} // end class XHeadlessTest
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.file.*;
+  import java.nio.file.attribute.*;
+  import java.util.*;
+
+/**
+  Checks that XPlistEditor reads and changes the first occurrence of each
+  key, that setBoolean and setString survive a round trip through the 
+  file, and that save keeps a copy of the prior version as Info_old.plist
+  and keeps the file's permissions. The checks are made on a copy of the 
+  fixture/Info.plist file found alongside this source. <p>
+
+  Run from the top of the project, with the compiled classes of src and 
+  test on the class path, optionally passing the fixture's location: <p>
+
+  <pre><code>
+    java -cp classes:test-classes com.powersurgepub.xos2.XPlistEditorTest
+  </code></pre>
+
+  The program exits with a status of 1 if a check fails. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XPlistEditorTest {
+
+  static final String           FIXTURE 
+      = "test/com/powersurgepub/xos2/fixture/Info.plist";
+
+  static final String           SCREEN_MENU_BAR = "apple.laf.useScreenMenuBar";
+  static final String           BRUSH_METAL     = "apple.awt.brushMetalLook";
+  static final String           VERSION         = "CFBundleVersion";
+  static final String           HIGH_RESOLUTION = "NSHighResolutionCapable";
+
+  private static int            failures        = 0;
+
+  public static void main (String[] args) 
+      throws Exception {
+    Path fixture = Paths.get (args.length > 0 ? args [0] : FIXTURE);
+    Path dir = Files.createTempDirectory ("xos2-plist");
+    try {
+      Path plist = dir.resolve ("Info.plist");
+      Files.copy (fixture, plist);
+      boolean posix = true;
+      Set<PosixFilePermission> permissions 
+          = PosixFilePermissions.fromString ("rw-r-----");
+      try {
+        Files.setPosixFilePermissions (plist, permissions);
+      } catch (UnsupportedOperationException e) {
+        posix = false;
+      }
+      byte[] original = Files.readAllBytes (plist);
+
+      // First occurrence, even within a nested dictionary
+      XPlistEditor editor = new XPlistEditor (plist.toFile());
+      check ("first occurrence read", 
+          "false", editor.getString (SCREEN_MENU_BAR));
+      check ("boolean element read", 
+          Boolean.TRUE, editor.getBoolean (BRUSH_METAL, false));
+      check ("missing key not set", 
+          Boolean.FALSE, editor.setBoolean ("NoSuchKey", true));
+
+      // Setting a value that is already there changes nothing
+      editor.setString (VERSION, "1.0");
+      editor.setBoolean (BRUSH_METAL, true);
+      check ("unchanged editor not saved", Boolean.FALSE, editor.save());
+      check ("unchanged editor left no backup", Boolean.FALSE,
+          Files.exists (dir.resolve ("Info_old.plist")));
+
+      check ("string value set", 
+          Boolean.TRUE, editor.setBoolean (SCREEN_MENU_BAR, true));
+      editor.setBoolean (BRUSH_METAL, false);
+      editor.setString (VERSION, "2.0");
+      editor.setString (HIGH_RESOLUTION, "maybe");
+      check ("changed editor saved", Boolean.TRUE, editor.save());
+
+      // Read the result back with a fresh editor
+      XPlistEditor reread = new XPlistEditor (plist.toFile());
+      check ("string set to true", "true", reread.getString (SCREEN_MENU_BAR));
+      check ("true element set to false", 
+          "false", reread.getString (BRUSH_METAL));
+      check ("string set", "2.0", reread.getString (VERSION));
+      check ("boolean element replaced by string", 
+          "maybe", reread.getString (HIGH_RESOLUTION));
+      String text = new String (Files.readAllBytes (plist), "UTF-8");
+      check ("later occurrence untouched", Boolean.TRUE, 
+          text.contains ("<string>second occurrence</string>"));
+
+      Path old = dir.resolve ("Info_old.plist");
+      check ("prior version kept", Boolean.TRUE, 
+          Arrays.equals (original, Files.readAllBytes (old)));
+      if (posix) {
+        check ("permissions kept", permissions, 
+            Files.getPosixFilePermissions (plist));
+        check ("backup permissions kept", permissions, 
+            Files.getPosixFilePermissions (old));
+      }
+      for (String name : dir.toFile().list()) {
+        if (! name.equals ("Info.plist") && ! name.equals ("Info_old.plist")) {
+          check ("no temporary file left", null, name);
+        }
+      }
+    } finally {
+      File[] files = dir.toFile().listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      dir.toFile().delete();
+    }
+    if (failures > 0) {
+      System.out.println ("XPlistEditorTest failed " + failures + " checks");
+      System.exit (1);
+    }
+    System.out.println ("XPlistEditorTest passed");
+  } // end method main
+
+  private static void check (String what, Object expected, Object actual) {
+    if (expected == null ? actual != null : ! expected.equals (actual)) {
+      System.out.println ("Failed: " + what + ": expected " + expected 
+          + " but was " + actual);
+      failures++;
+    }
+  }
+
+} // end class XPlistEditorTest
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2004 - 2013 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.xos2;
+
+  import java.io.*;
+  import java.nio.file.*;
+  import java.util.*;
+  import java.util.concurrent.atomic.*;
+  import javax.print.*;
+
+/**
+  Checks that an XPrintPipeline sends documents to its spooler strictly 
+  in the order the files were given, one job at a time, while rendering 
+  ahead of the spooler, and that a file that can't be rendered is counted
+  as failed without stopping the rest. An in-memory XPrintSpooler stands
+  in for the printer. Also checks that an XFilePrintSpooler carries on 
+  numbering from the jobs already in its folder, so that jobs from an 
+  earlier run are never replaced. <p>
+
+  Run with the compiled classes of src and test on the class path: <p>
+
+  <pre><code>
+    java -cp classes:test-classes com.powersurgepub.xos2.XPrintPipelineTest
+  </code></pre>
+
+  The program exits with a status of 1 if a check fails. <p>
+
+   @author Herb Bowie of PowerSurge Publishing
+ */
+public class XPrintPipelineTest {
+
+  static final int              FILES               = 40;
+
+  /** The name of the file whose rendering fails. */
+  static final String           BAD_FILE            = "file-13.txt";
+
+  private static int            failures            = 0;
+
+  public static void main (String[] args) 
+      throws Exception {
+    Path dir = Files.createTempDirectory ("xos2-print");
+    try {
+      checkPipeline (dir.resolve ("files"));
+      checkJobNumbers (dir.resolve ("spool"));
+    } finally {
+      delete (dir.toFile());
+    }
+    if (failures > 0) {
+      System.out.println ("XPrintPipelineTest failed " + failures 
+          + " checks");
+      System.exit (1);
+    }
+    System.out.println ("XPrintPipelineTest passed");
+  } // end method main
+
+  /**
+    Print a batch whose early files take longest to render, so that later 
+    ones are ready first, and see that they are still spooled in order.
+   */
+  private static void checkPipeline (Path folder)
+      throws Exception {
+    Files.createDirectories (folder);
+    List<File> files = new ArrayList<File>();
+    for (int i = 0; i < FILES; i++) {
+      Path file = folder.resolve ("file-" + i + ".txt");
+      Files.write (file, ("Page " + i).getBytes ("UTF-8"));
+      files.add (file.toFile());
+    }
+    final AtomicInteger rendered = new AtomicInteger();
+    final MemorySpooler spooler = new MemorySpooler (rendered);
+    XPrintPipeline pipeline = new XPrintPipeline (spooler, 
+        new XPrintRenderer() {
+          public Doc render (File inFile)
+              throws IOException {
+            String name = inFile.getName();
+            int number = Integer.parseInt 
+                (name.substring (name.indexOf ('-') + 1, name.indexOf ('.')));
+            try {
+              Thread.sleep ((FILES - number) % 3);
+            } catch (InterruptedException e) {
+              throw new InterruptedIOException();
+            }
+            if (name.equals (BAD_FILE)) {
+              throw new IOException ("Can't render " + name);
+            }
+            byte[] bytes = Files.readAllBytes (inFile.toPath());
+            rendered.incrementAndGet();
+            return new SimpleDoc (bytes, DocFlavor.BYTE_ARRAY.AUTOSENSE, null);
+          }
+        });
+    XBatch batch = pipeline.print (files);
+    batch.getFuture().get();
+    pipeline.shutdown();
+
+    List<String> expected = new ArrayList<String>();
+    for (File file : files) {
+      if (! file.getName().equals (BAD_FILE)) {
+        expected.add (file.getName());
+      }
+    }
+    check ("jobs spooled in order", expected, spooler.jobs);
+    check ("completed", FILES - 1, batch.getCompleted());
+    check ("failed", 1, batch.getFailed());
+    check ("one job at a time", 1, spooler.mostAtOnce);
+    check ("rendered ahead of the spooler", Boolean.TRUE, 
+        spooler.mostAhead > 0);
+    // No more than two documents per render thread, and four threads
+    check ("lookahead bounded", Boolean.TRUE, spooler.mostAhead <= 8);
+  } // end method checkPipeline
+
+  /**
+    Spool into a folder already holding jobs from an earlier run.
+   */
+  private static void checkJobNumbers (Path folder)
+      throws Exception {
+    Files.createDirectories (folder);
+    Files.write (folder.resolve ("0007-earlier.prn"), 
+        "earlier".getBytes ("UTF-8"));
+    Files.write (folder.resolve ("notes.prn"), "notes".getBytes ("UTF-8"));
+    XFilePrintSpooler spooler = new XFilePrintSpooler (folder.toFile());
+    spooler.submit ("first", doc ("first"));
+    spooler.submit ("second job", doc ("second"));
+    // A new spooler, as in the next run, carries on from there
+    new XFilePrintSpooler (folder.toFile()).submit ("third", doc ("third"));
+
+    check ("earlier job kept", "earlier", read (folder, "0007-earlier.prn"));
+    check ("numbering continued", "first", read (folder, "0008-first.prn"));
+    check ("job name made safe", "second", 
+        read (folder, "0009-second_job.prn"));
+    check ("numbering continued in a new run", "third", 
+        read (folder, "0010-third.prn"));
+    check ("no other files", 5, folder.toFile().list().length);
+  } // end method checkJobNumbers
+
+  private static Doc doc (String text)
+      throws IOException {
+    return new SimpleDoc 
+        (text.getBytes ("UTF-8"), DocFlavor.BYTE_ARRAY.AUTOSENSE, null);
+  }
+
+  private static String read (Path folder, String name)
+      throws IOException {
+    Path file = folder.resolve (name);
+    if (! Files.exists (file)) {
+      return null;
+    }
+    return new String (Files.readAllBytes (file), "UTF-8");
+  }
+
+  private static void delete (File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete (child);
+      }
+    }
+    file.delete();
+  }
+
+  private static void check (String what, Object expected, Object actual) {
+    if (expected == null ? actual != null : ! expected.equals (actual)) {
+      System.out.println ("Failed: " + what + ": expected " + expected 
+          + " but was " + actual);
+      failures++;
+    }
+  }
+
+  /**
+    A spooler that keeps a list of the jobs it is sent, noting how many 
+    were submitted at once, and how far rendering had got ahead of it.
+   */
+  static class MemorySpooler 
+      implements XPrintSpooler {
+
+    final List<String>          jobs      
+        = Collections.synchronizedList (new ArrayList<String>());
+    private final AtomicInteger rendered;
+    private final AtomicInteger active    = new AtomicInteger();
+    volatile int                mostAtOnce          = 0;
+    volatile int                mostAhead           = 0;
+
+    MemorySpooler (AtomicInteger rendered) {
+      this.rendered = rendered;
+    }
+
+    public void submit (String jobName, Doc doc)
+        throws PrintException {
+      int atOnce = active.incrementAndGet();
+      mostAtOnce = Math.max (mostAtOnce, atOnce);
+      try {
+        Thread.sleep (5);
+      } catch (InterruptedException e) {
+        throw new PrintException (e);
+      }
+      // Documents rendered, beyond this one, while this one was printing
+      mostAhead = Math.max (mostAhead, rendered.get() - jobs.size() - 1);
+      jobs.add (jobName);
+      active.decrementAndGet();
+    }
+
+  } // end class MemorySpooler
+
+} // end class XPrintPipelineTest